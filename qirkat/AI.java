@@ -1,7 +1,10 @@
 package qirkat;
-import java.util.ArrayList;
 
-import static qirkat.PieceColor.WHITE;
+import java.io.IOException;
+
+import static qirkat.Move.MAX_INDEX;
+import static qirkat.PieceColor.*;
+import static qirkat.TranspositionTable.*;
 
 /**
  * A Player that computes its own moves.
@@ -13,22 +16,179 @@ class AI extends Player {
     /**
      * Maximum minimax search depth before going to static evaluation.
      */
-    private static final int MAX_DEPTH = 8;
+    static final int MAX_DEPTH = 8;
+    /**
+     * Maximum depth of any search, including benchmarks.
+     */
+    static final int MAX_PLY = 63;
     /**
      * A position magnitude indicating a win (for white if positive, black
      * if negative).
      */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
     /**
      * A magnitude greater than a normal value.
      */
-    private static final int INFTY = Integer.MAX_VALUE;
+    static final int INFTY = Integer.MAX_VALUE;
+    /**
+     * Values with magnitude at least this denote forced wins or losses.
+     */
+    static final int WIN_THRESHOLD = WINNING_VALUE - 1000;
+    /**
+     * Value of one piece in static scores.
+     */
+    private static final int PIECE_VALUE = Board.PIECE_VALUE;
+    /**
+     * Default limit on the time spent finding one move (milliseconds).
+     */
+    static final long DEFAULT_TIME_LIMIT = 1000;
+    /**
+     * Number of nodes searched between checks of the clock.
+     */
+    static final int CLOCK_INTERVAL = 1024;
+    /**
+     * Late move reductions apply to quiet moves after the first
+     * LMR_MOVES at nodes at least LMR_DEPTH above the horizon.
+     */
+    private static final int LMR_MOVES = 3, LMR_DEPTH = 3;
+    /**
+     * Nodes at least IID_DEPTH above the horizon without a hash move
+     * first search to IID_REDUCTION plies less to find one.
+     */
+    private static final int IID_DEPTH = 4, IID_REDUCTION = 2;
+    /**
+     * FUTILITY_MARGINS[D] bounds how much a quiet move at D plies above
+     * the horizon is likely to gain over the static score.
+     */
+    private static final int[] FUTILITY_MARGINS = {
+        0, 60, 160
+    };
+    /**
+     * Initial half-width of the aspiration window around the value of
+     * the previous iteration.
+     */
+    private static final int ASPIRATION_WINDOW = PIECE_VALUE / 2;
+    /**
+     * Aspiration half-widths at or above this give way to an infinite
+     * bound.
+     */
+    private static final int MAX_ASPIRATION = 8 * PIECE_VALUE;
+
+    /**
+     * Magnitude of the values of positions the bitbase shows to be won
+     * or lost, before adjustment: far from any static score, and below
+     * WIN_THRESHOLD, since the distance to the end is unknown.
+     */
+    private static final int KNOWN_WIN = WIN_THRESHOLD / 2;
+
+    /**
+     * Returned by endgameValue for positions it does not know.
+     */
+    private static final int NOT_FOUND = Integer.MIN_VALUE;
 
     /**
      * A new AI for GAME that will play MYCOLOR.
      */
     AI(Game game, PieceColor myColor) {
         super(game, myColor);
+        for (int i = 0; i < _moves.length; i += 1) {
+            _moves[i] = new MoveBuffer();
+        }
+    }
+
+    /**
+     * Use a transposition table of about MEGABYTES megabytes, shared by
+     * all AIs.
+     */
+    static synchronized void setHashSize(int megabytes) {
+        _hashMegabytes = megabytes;
+        _sharedTable = null;
+    }
+
+    /**
+     * Return the transposition table shared by all AIs, creating it if
+     * needed.
+     */
+    static synchronized TranspositionTable table() {
+        if (_sharedTable == null) {
+            _sharedTable = new TranspositionTable(_hashMegabytes);
+        }
+        return _sharedTable;
+    }
+
+    /**
+     * Search with THREADS threads: the thread making the move and
+     * THREADS - 1 helpers.
+     */
+    static void setThreads(int threads) {
+        _threads = Math.max(1, threads);
+    }
+
+    /**
+     * Return the number of threads used by each search.
+     */
+    static int threads() {
+        return _threads;
+    }
+
+    /**
+     * Return the time allowed to find each move (milliseconds).
+     */
+    static long timeLimit() {
+        return _timeLimit;
+    }
+
+    /**
+     * Set the time allowed to find each move to MILLIS milliseconds.
+     */
+    static void setTimeLimit(long millis) {
+        _timeLimit = millis;
+    }
+
+    /**
+     * Think about my next move while waiting for my opponent's iff
+     * PONDER (off by default).
+     */
+    static void setPondering(boolean ponder) {
+        _pondering = ponder;
+    }
+
+    /**
+     * Look up positions with few pieces in the endgame tablebase in the
+     * file named FILENAME (see TablebaseGenerator), or in none if
+     * FILENAME is null.  Returns false, and changes nothing, if the file
+     * cannot be read.
+     */
+    static boolean setTablebase(String fileName) {
+        if (fileName == null) {
+            _tablebase = null;
+            return true;
+        }
+        try {
+            _tablebase = new Tablebase(fileName);
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /**
+     * Look up the outcomes of positions with few pieces in the bitbase
+     * in the file named FILENAME (see TablebaseGenerator), or in none if
+     * FILENAME is null.  Returns false, and changes nothing, if the file
+     * cannot be read.
+     */
+    static boolean setBitbase(String fileName) {
+        if (fileName == null) {
+            _bitbase = null;
+            return true;
+        }
+        try {
+            _bitbase = new Bitbase(fileName);
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
     }
 
     @Override
@@ -37,21 +197,289 @@ class AI extends Player {
         Move move = findMove();
         Main.endTiming();
 
+        if (move != null) {
+            game().reportMove("%s moves %s.", myColor(), move);
+            if (_pondering) {
+                startPondering(move);
+            }
+        }
         return move;
     }
 
     /**
-     * Return a move for me from the current position, assuming there
-     * is a move.
+     * Return a move for me from the current position, or null if there
+     * is none.  Searches with iterative deepening: successively deeper
+     * searches until reaching MAX_DEPTH or running out of time, and
+     * returns the best move of the deepest search that completed.  If
+     * I have been pondering the current position, continues that search
+     * instead, for at most the usual time.
      */
     private Move findMove() {
-        Board b = new Board(board());
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+        if (_ponderer != null) {
+            if (board().key() == _ponderKey) {
+                _deadline = System.currentTimeMillis() + _timeLimit;
+                joinPonderer();
+                return _ponderMove;
+            }
+            stopPondering();
+        }
+        return findMove(board().snapshot(), MAX_DEPTH, _timeLimit);
+    }
+
+    @Override
+    void stopPondering() {
+        if (_ponderer != null) {
+            _stopRequested = true;
+            joinPonderer();
+            _stopRequested = false;
+        }
+    }
+
+    /**
+     * Start searching, in the background and without a time limit, the
+     * position that I expect after my move MOVE and my opponent's reply
+     * to it in the principal variation of the last search, if there is
+     * one.
+     */
+    private void startPondering(Move move) {
+        if (_bestLineLength < 2 || _bestLine[0] != move.id()) {
+            return;
+        }
+        Board b = board().snapshot();
+        b.makeMoveUnchecked(move);
+        b.makeMoveUnchecked(Move.get(_bestLine[1]));
+        _ponderKey = b.key();
+        _deadline = Long.MAX_VALUE;
+        _ponderer = new Thread(() -> _ponderMove = search(b, MAX_DEPTH));
+        _ponderer.setDaemon(true);
+        _ponderer.start();
+    }
+
+    /**
+     * Wait for the pondering search to finish.
+     */
+    private void joinPonderer() {
+        try {
+            _ponderer.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+        _ponderer = null;
+    }
+
+    /**
+     * Return the best move found in position B by an iterative
+     * deepening search to at most MAXDEPTH plies, taking about TIMELIMIT
+     * milliseconds at most, or null if there is no move.
+     */
+    Move findMove(Board b, int maxDepth, long timeLimit) {
+        _deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE
+            : System.currentTimeMillis() + timeLimit;
+        return search(b, maxDepth);
+    }
+
+    /**
+     * Return the best move found in position B by an iterative
+     * deepening search to at most MAXDEPTH plies, with the help of
+     * _threads - 1 helper threads, stopping at _deadline.
+     */
+    private Move search(Board b, int maxDepth) {
+        _table = table();
+        _table.newSearch();
+        Thread[] helpers = startHelpers(b, maxDepth);
+        Move best = iterate(b, 1, maxDepth);
+        stopHelpers(helpers);
+        return best;
+    }
+
+    /**
+     * Start _threads - 1 helper threads, each searching its own snapshot
+     * of B to MAXDEPTH with iterative deepening and sharing my
+     * transposition table, and return them.  Odd-numbered helpers start
+     * one ply deeper than the rest, so that the helpers tend to fill the
+     * table with results that the main search will need next.
+     */
+    private Thread[] startHelpers(Board b, int maxDepth) {
+        int n = _threads - 1;
+        if (_helpers.length != n) {
+            _helpers = new AI[n];
+            for (int k = 0; k < n; k += 1) {
+                _helpers[k] = new AI(game(), myColor());
+            }
+        }
+        Thread[] threads = new Thread[n];
+        for (int k = 0; k < n; k += 1) {
+            AI helper = _helpers[k];
+            Board snapshot = b.snapshot();
+            int firstDepth = 1 + (k + 1) % 2;
+            helper._table = _table;
+            helper._stopRequested = false;
+            helper._deadline = Long.MAX_VALUE;
+            threads[k] = new Thread(() ->
+                helper.iterate(snapshot, Math.min(firstDepth, maxDepth),
+                               maxDepth));
+            threads[k].setDaemon(true);
+            threads[k].start();
+        }
+        return threads;
+    }
+
+    /**
+     * Stop the helper threads THREADS started by startHelpers and wait
+     * for them to finish.
+     */
+    private void stopHelpers(Thread[] threads) {
+        for (int k = 0; k < threads.length; k += 1) {
+            _helpers[k]._stopRequested = true;
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Search position B with iterative deepening from FIRSTDEPTH to at
+     * most MAXDEPTH plies, stopping at _deadline, and return the best
+     * move found by the deepest search that completed, or null if there
+     * is none.
+     */
+    private Move iterate(Board b, int firstDepth, int maxDepth) {
+        int sense = b.whoseMove() == WHITE ? 1 : -1;
+        ageHistory();
+        _timeUp = _canStop = false;
+        _nodes = _quiescenceNodes = 0;
+        _reduced = _researched = _pruned = _extended = _deepened = 0;
+        _passes = _tablebaseHits = _bitbaseHits = 0;
+        _bestLineLength = 0;
+        Move best = null;
+        int value = 0;
+        for (int depth = firstDepth; depth <= maxDepth; depth += 1) {
+            _lastFoundMove = null;
+            if (_mtdf) {
+                value = mtdf(b, depth, sense, value);
+            } else {
+                value = aspirate(b, depth, sense, value);
+            }
+            if (_timeUp) {
+                break;
+            }
+            best = _lastFoundMove;
+            _bestLineLength = _pvLength[0];
+            System.arraycopy(_pv[0], 0, _bestLine, 0, _bestLineLength);
+            _canStop = true;
+            if (best == null || Math.abs(value) >= WIN_THRESHOLD) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Search position B to DEPTH for the side whose sense is SENSE with
+     * MTD(f), and return its value: a series of null-window searches
+     * starting around GUESS, the value of the previous iteration, each
+     * of which narrows the bounds on the value until they meet.  Leaves
+     * in _lastFoundMove the move found by the last search that failed
+     * high, which proved the final lower bound, and in _pv that move
+     * followed by the best moves recorded in the transposition table
+     * (see extendLine), since a null-window search that fails high
+     * records no line beyond its first move.
+     */
+    private int mtdf(Board b, int depth, int sense, int guess) {
+        int lower = -INFTY, upper = INFTY;
+        int value = guess;
+        Move best = null;
+        int[] line = new int[MAX_PLY + 1];
+        int lineLength = 0;
+        while (lower < upper) {
+            int beta = value == lower ? value + 1 : value;
+            _passes += 1;
+            value = findMove(b, depth, 0, sense, beta - 1, beta);
+            if (_timeUp) {
+                return value;
+            }
+            if (value < beta) {
+                upper = value;
+            } else {
+                lower = value;
+                best = _lastFoundMove;
+                lineLength = _pvLength[0];
+                System.arraycopy(_pv[0], 0, line, 0, lineLength);
+            }
+        }
+        if (best != null) {
+            _lastFoundMove = best;
+            lineLength = extendLine(b, line, lineLength, depth);
+            _pvLength[0] = lineLength;
+            System.arraycopy(line, 0, _pv[0], 0, lineLength);
+        }
+        return value;
+    }
+
+    /**
+     * Extend LINE, whose first LENGTH entries are the ids of moves from
+     * position B, to at most MAXLENGTH moves by following the best
+     * moves stored in the transposition table for the positions it
+     * reaches, as long as they are legal.  Return the new length.
+     * Leaves B unchanged.
+     */
+    private int extendLine(Board b, int[] line, int length, int maxLength) {
+        MoveBuffer moves = new MoveBuffer();
+        for (int k = 0; k < length; k += 1) {
+            b.makeMoveUnchecked(Move.get(line[k]));
+        }
+        int n = length;
+        while (n < maxLength) {
+            long entry = _table.probe(b.key());
+            if (entry == MISSING) {
+                break;
+            }
+            int id = TranspositionTable.move(entry);
+            b.getMoves(moves);
+            if (id == NO_MOVE || !moves.contains(id)) {
+                break;
+            }
+            line[n] = id;
+            b.makeMoveUnchecked(Move.get(id));
+            n += 1;
+        }
+        for (int k = n - 1; k >= 0; k -= 1) {
+            b.unmakeMove(Move.get(line[k]));
+        }
+        return n;
+    }
+
+    /**
+     * Search position B to DEPTH for the side whose sense is SENSE and
+     * return its value, starting with a window around GUESS, the value
+     * of the previous iteration, when using principal variation search.
+     * Each time the value falls outside the window, widens it on that
+     * side and searches again.
+     */
+    private int aspirate(Board b, int depth, int sense, int guess) {
+        if (!_pvs || depth == 1 || Math.abs(guess) >= WIN_THRESHOLD) {
+            return findMove(b, depth, 0, sense, -INFTY, INFTY);
+        }
+        int delta = ASPIRATION_WINDOW;
+        int alpha = guess - delta, beta = guess + delta;
+        while (true) {
+            int value = findMove(b, depth, 0, sense, alpha, beta);
+            if (_timeUp) {
+                return value;
+            }
+            delta *= 2;
+            if (value <= alpha) {
+                alpha = delta >= MAX_ASPIRATION ? -INFTY : guess - delta;
+            } else if (value >= beta) {
+                beta = delta >= MAX_ASPIRATION ? INFTY : guess + delta;
+            } else {
+                return value;
+            }
         }
-        return _lastFoundMove;
     }
 
     /**
@@ -61,32 +489,804 @@ class AI extends Player {
     private Move _lastFoundMove;
 
     /**
-     * Find a move from position BOARD and return its value, recording
-     * the move found in _lastFoundMove iff SAVEMOVE. The move
-     * should have maximal value or have value > BETA if SENSE==1,
-     * and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     * DEPTH levels.  Searching at level 0 simply returns a static estimate
-     * of the board value and does not set _lastMoveFound.
+     * Find a move from position BOARD, PLY moves below the root, and
+     * return its negamax value: the value for the side to move, which is
+     * white if SENSE==1 and black if SENSE==-1.  Records the move found
+     * in _lastFoundMove iff PLY is 0.  Values at or below ALPHA or at or
+     * above BETA need only be bounds on the true value.  Searches up to
+     * DEPTH levels.  Searching at level 0 goes on to a quiescence
+     * search (see quiesce) or, if that is off, simply returns a static
+     * estimate of the board value, and does not set _lastFoundMove.
+     * Returns 0 immediately if time runs out after the first iteration.
      */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
+    private int findMove(Board board, int depth, int ply, int sense,
                          int alpha, int beta) {
-        Move best;
-        best = null;
+        if (depth == 0 && _quiescence) {
+            return quiesce(board, ply, sense, alpha, beta);
+        }
+        countNode();
+        if (_timeUp) {
+            return 0;
+        }
+        _pvLength[ply] = ply;
+        if (ply > 0) {
+            int value = endgameValue(board, ply, sense);
+            if (value != NOT_FOUND) {
+                return value;
+            }
+        }
 
-        ArrayList<Move> moves = board.getMoves();
+        long key = board.key();
+        long entry = depth > 0 ? _table.probe(key) : MISSING;
+        if (ply > 0 && entry != MISSING) {
+            if (depth(entry) >= depth) {
+                int value = fromTable(score(entry), ply);
+                switch (bound(entry)) {
+                case EXACT:
+                    return value;
+                case LOWER:
+                    if (value >= beta) {
+                        return value;
+                    }
+                    break;
+                default:
+                    if (value <= alpha) {
+                        return value;
+                    }
+                    break;
+                }
+            }
+        }
 
+        int hashMove =
+            entry == MISSING ? NO_MOVE : TranspositionTable.move(entry);
+        if (_deepening && _ordering && hashMove == NO_MOVE && ply > 0
+            && depth >= IID_DEPTH) {
+            _deepened += 1;
+            findMove(board, depth - IID_REDUCTION, ply, sense, alpha, beta);
+            if (_timeUp) {
+                return 0;
+            }
+            entry = _table.probe(key);
+            if (entry != MISSING) {
+                hashMove = TranspositionTable.move(entry);
+            }
+            _pvLength[ply] = ply;
+        }
 
-        if (saveMove) {
-            _lastFoundMove = best;
+        MoveBuffer moves = _moves[ply];
+        board.getMoves(moves);
+        if (moves.isEmpty()) {
+            return -(WINNING_VALUE - ply);
+        }
+        if (depth == 0) {
+            return sense * staticScore(board);
+        }
+        boolean quiet = !moves.move(0).isJump();
+
+        int newDepth = depth - 1;
+        if (_extending && !quiet && moves.size() == 1
+            && ply + depth < MAX_PLY) {
+            _extended += 1;
+            newDepth = depth;
+        }
+        int futileValue = INFTY;
+        if (_futility && quiet && depth < FUTILITY_MARGINS.length
+            && beta - alpha == 1 && Math.abs(alpha) < WIN_THRESHOLD) {
+            futileValue = sense * staticScore(board) + FUTILITY_MARGINS[depth];
+        }
+
+        if (_ordering) {
+            scoreMoves(moves, ply, hashMove);
+        }
+        int bestValue = -INFTY;
+        int bestMove = NO_MOVE;
+        int a = alpha;
+        for (int i = 0; i < moves.size(); i += 1) {
+            if (_ordering) {
+                moves.selectBest(i);
+            }
+            Move mov = moves.move(i);
+            if (i > 0 && futileValue <= a) {
+                _pruned += 1;
+                bestValue = Math.max(bestValue, futileValue);
+                continue;
+            }
+            int reduction = 0;
+            if (_reducing && quiet && i >= LMR_MOVES && depth >= LMR_DEPTH
+                && (!_ordering || moves.score(i) < KILLER_SCORE)) {
+                _reduced += 1;
+                reduction = 1;
+            }
+            board.makeMoveUnchecked(mov);
+            int value;
+            if (i == 0) {
+                value = -findMove(board, newDepth, ply + 1, -sense,
+                                  -beta, -a);
+            } else {
+                int scout = _pvs || reduction > 0 ? a + 1 : beta;
+                value = -findMove(board, newDepth - reduction, ply + 1,
+                                  -sense, -scout, -a);
+                if (reduction > 0 && value > a) {
+                    _researched += 1;
+                    value = -findMove(board, newDepth, ply + 1, -sense,
+                                      -scout, -a);
+                }
+                if (scout != beta && value > a && value < beta) {
+                    value = -findMove(board, newDepth, ply + 1, -sense,
+                                      -beta, -a);
+                }
+            }
+            board.unmakeMove(mov);
+            if (_timeUp) {
+                return 0;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                bestMove = mov.id();
+                if (ply == 0) {
+                    _lastFoundMove = mov;
+                }
+                if (value > a) {
+                    a = value;
+                    savePV(mov.id(), ply);
+                }
+                if (value >= beta) {
+                    if (!mov.isJump()) {
+                        recordCutoff(mov, depth, ply);
+                    }
+                    break;
+                }
+            }
+        }
+        int bound = bestValue <= alpha ? UPPER
+            : bestValue >= beta ? LOWER : EXACT;
+        _table.store(key, depth, bound, toTable(bestValue, ply), bestMove);
+        return bestValue;
+    }
+
+    /**
+     * Return the value of BOARD, PLY moves below the root, for the side
+     * whose sense is SENSE, as for findMove, searching only captures.
+     * Since capturing is compulsory, a position with a capture is never
+     * quiet, and is searched over all its capture chains.  A position
+     * without one stands pat: its value is its static score.  Values at
+     * or below ALPHA or at or above BETA need only be bounds.  Returns 0
+     * if time runs out.
+     */
+    private int quiesce(Board board, int ply, int sense,
+                        int alpha, int beta) {
+        countNode();
+        _quiescenceNodes += 1;
+        if (_timeUp) {
+            return 0;
+        }
+        _pvLength[ply] = ply;
+        int known = endgameValue(board, ply, sense);
+        if (known != NOT_FOUND) {
+            return known;
+        }
+
+        MoveBuffer moves = _moves[ply];
+        board.getMoves(moves);
+        if (moves.isEmpty()) {
+            return -(WINNING_VALUE - ply);
+        }
+        if (!moves.move(0).isJump() || ply == MAX_PLY) {
+            return sense * staticScore(board);
+        }
+
+        for (int i = 0; i < moves.size(); i += 1) {
+            moves.setScore(i, moves.move(i).captures());
+        }
+        int bestValue = -INFTY;
+        int a = alpha;
+        for (int i = 0; i < moves.size(); i += 1) {
+            moves.selectBest(i);
+            Move mov = moves.move(i);
+            board.makeMoveUnchecked(mov);
+            int value = -quiesce(board, ply + 1, -sense, -beta, -a);
+            board.unmakeMove(mov);
+            if (_timeUp) {
+                return 0;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                if (value > a) {
+                    a = value;
+                    savePV(mov.id(), ply);
+                }
+                if (value >= beta) {
+                    break;
+                }
+            }
+        }
+        return bestValue;
+    }
+
+    /**
+     * Return the negamax value of BOARD, PLY moves below the root, for
+     * the side whose sense is SENSE, if the bitbase or tablebase knows
+     * its outcome, and otherwise NOT_FOUND.  The bitbase is consulted
+     * first, since it is cheap.  Wins and losses that only it knows are
+     * scored KNOWN_WIN from the ply, adjusted by the static score so
+     * that the search still makes progress.
+     */
+    private int endgameValue(Board board, int ply, int sense) {
+        if (_bitbase != null) {
+            int outcome = _bitbase.probe(board);
+            if (outcome == Tablebase.DRAW) {
+                _bitbaseHits += 1;
+                return 0;
+            } else if (outcome != Tablebase.MISSING && _tablebase == null) {
+                _bitbaseHits += 1;
+                int known = KNOWN_WIN - ply;
+                return (outcome == Tablebase.WIN ? known : -known)
+                    + sense * staticScore(board);
+            }
+        }
+        if (_tablebase != null) {
+            int entry = _tablebase.probe(board);
+            if (entry != Tablebase.MISSING) {
+                return tablebaseValue(entry, ply);
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Return the negamax value, PLY moves below the root, of a position
+     * whose tablebase entry is ENTRY, and count the hit.  Wins and losses
+     * are scored like those found by search, by the ply at which the
+     * game ends.
+     */
+    private int tablebaseValue(int entry, int ply) {
+        _tablebaseHits += 1;
+        int end = Math.min(ply + Tablebase.distance(entry),
+                           WINNING_VALUE - WIN_THRESHOLD);
+        switch (Tablebase.outcome(entry)) {
+        case Tablebase.WIN:
+            return WINNING_VALUE - end;
+        case Tablebase.LOSS:
+            return -(WINNING_VALUE - end);
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Count a position visited, and note whether time has run out or I
+     * have been told to stop.
+     */
+    private void countNode() {
+        _nodes += 1;
+        if (_nodes % CLOCK_INTERVAL == 0
+            && (_stopRequested
+                || _canStop && System.currentTimeMillis() > _deadline)) {
+            _timeUp = true;
+        }
+    }
+
+    /**
+     * Record that the move with id MOVE, followed by the principal
+     * variation most recently found one ply deeper, is the principal
+     * variation at PLY.
+     */
+    private void savePV(int move, int ply) {
+        int[] pv = _pv[ply];
+        pv[ply] = move;
+        int length = ply + 1;
+        if (ply < MAX_PLY) {
+            int[] next = _pv[ply + 1];
+            for (int k = ply + 1; k < _pvLength[ply + 1]; k += 1) {
+                pv[k] = next[k];
+                length = k + 1;
+            }
+        }
+        _pvLength[ply] = length;
+    }
+
+    /**
+     * Return the principal variation found by the last completed
+     * iteration of the last search: the best move, the expected reply,
+     * and so on.  It may be cut short by transposition-table hits.
+     */
+    String principalVariation() {
+        StringBuilder out = new StringBuilder();
+        for (int k = 0; k < _bestLineLength; k += 1) {
+            if (k > 0) {
+                out.append(' ');
+            }
+            out.append(Move.get(_bestLine[k]));
         }
+        return out.toString();
+    }
+
+    /**
+     * Assign ordering scores to MOVES, the moves at PLY, so that the move
+     * whose id is HASHMOVE comes first, then captures (by the number of
+     * pieces they take), then the killer moves for PLY, then the rest in
+     * order of their history scores.
+     */
+    private void scoreMoves(MoveBuffer moves, int ply, int hashMove) {
+        for (int i = 0; i < moves.size(); i += 1) {
+            int id = moves.get(i);
+            Move mov = Move.get(id);
+            int score;
+            if (id == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (mov.isJump()) {
+                score = CAPTURE_SCORE + mov.captures();
+            } else if (id == _killers[ply][0]) {
+                score = KILLER_SCORE + 1;
+            } else if (id == _killers[ply][1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = _history[mov.fromIndex()][mov.toIndex()];
+            }
+            moves.setScore(i, score);
+        }
+    }
+
+    /**
+     * Record that the non-capturing move MOV, searched to DEPTH at PLY,
+     * caused a beta cutoff, by making it a killer move at PLY and
+     * raising its history score.
+     */
+    private void recordCutoff(Move mov, int depth, int ply) {
+        int id = mov.id();
+        if (_killers[ply][0] != id) {
+            _killers[ply][1] = _killers[ply][0];
+            _killers[ply][0] = id;
+        }
+        int[] history = _history[mov.fromIndex()];
+        history[mov.toIndex()] += depth * depth;
+        if (history[mov.toIndex()] >= MAX_HISTORY) {
+            ageHistory();
+        }
+    }
+
+    /**
+     * Reduce all history scores, so that recent cutoffs count for more
+     * than old ones, and forget the killer moves.
+     */
+    private void ageHistory() {
+        for (int[] row : _history) {
+            for (int j = 0; j < row.length; j += 1) {
+                row[j] /= 2;
+            }
+        }
+        for (int[] killers : _killers) {
+            killers[0] = killers[1] = NO_MOVE;
+        }
+    }
+
+    /**
+     * Return VALUE, found PLY moves below the root, in the form stored
+     * in the transposition table.  Forced wins and losses are stored as
+     * distances from the position rather than from the root.
+     */
+    static int toTable(int value, int ply) {
+        if (value >= WIN_THRESHOLD) {
+            return value + ply;
+        } else if (value <= -WIN_THRESHOLD) {
+            return value - ply;
+        }
+        return value;
+    }
+
+    /**
+     * Return the value, PLY moves below the root, denoted by the
+     * transposition-table score VALUE.  Inverse of toTable.
+     */
+    static int fromTable(int value, int ply) {
+        if (value >= WIN_THRESHOLD) {
+            return value - ply;
+        } else if (value <= -WIN_THRESHOLD) {
+            return value + ply;
+        }
+        return value;
+    }
+
+    /**
+     * Return a heuristic value for BOARD: positive if it favors white and
+     * negative if it favors black.
+     */
+    static int staticScore(Board board) {
+        return board.evaluation();
+    }
+
+    /**
+     * Search MOVES in the order given by scoreMoves iff ORDERED (on by
+     * default).
+     */
+    static void setMoveOrdering(boolean ordered) {
+        _ordering = ordered;
+    }
+
+    /**
+     * Return the number of positions visited by the last search.
+     */
+    long nodes() {
+        return _nodes;
+    }
+
+    /**
+     * Return the number of those positions visited by quiescence
+     * searches.
+     */
+    long quiescenceNodes() {
+        return _quiescenceNodes;
+    }
+
+    /**
+     * Use the root driver named DRIVER: "pvs" for principal variation
+     * search with aspiration windows (the default), or "mtdf" for
+     * MTD(f).  Returns false if there is no such driver.
+     */
+    static boolean setDriver(String driver) {
+        switch (driver) {
+        case "pvs":
+            _mtdf = false;
+            return true;
+        case "mtdf":
+            _mtdf = true;
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Use the selective-search techniques named in TECHNIQUES, a
+     * comma-separated list of "lmr" (late move reductions), "futility"
+     * (futility pruning), "extension" (single-reply extensions), and
+     * "iid" (internal iterative deepening), or "all" or "none", and
+     * none of the others.  All are on by default.  Returns false, and
+     * changes nothing, if TECHNIQUES names anything else.
+     */
+    static boolean setSelectivity(String techniques) {
+        boolean reducing, futility, extending, deepening;
+        reducing = futility = extending = deepening = false;
+        for (String name : techniques.split(",")) {
+            switch (name) {
+            case "lmr":
+                reducing = true;
+                break;
+            case "futility":
+                futility = true;
+                break;
+            case "extension":
+                extending = true;
+                break;
+            case "iid":
+                deepening = true;
+                break;
+            case "all":
+                reducing = futility = extending = deepening = true;
+                break;
+            case "none":
+                break;
+            default:
+                return false;
+            }
+        }
+        _reducing = reducing;
+        _futility = futility;
+        _extending = extending;
+        _deepening = deepening;
+        return true;
+    }
 
-        return 0;
+    /**
+     * Return a summary of the selective-search techniques applied in the
+     * last search.
+     */
+    String selectivityStatistics() {
+        return String.format("%d reduced (%d re-searched), %d pruned,"
+                             + " %d extended, %d deepened",
+                             _reduced, _researched, _pruned, _extended,
+                             _deepened);
     }
 
     /**
-     * Return a heuristic value for BOARD.
+     * Extend searches at their horizon with quiescence searches iff
+     * QUIESCENCE (on by default).
      */
-    private int staticScore(Board board) {
-        return 0;
+    static void setQuiescence(boolean quiescence) {
+        _quiescence = quiescence;
     }
+
+    /**
+     * Use principal variation search with aspiration windows iff PVS
+     * (on by default); otherwise, plain alpha-beta.
+     */
+    static void setPrincipalVariationSearch(boolean pvs) {
+        _pvs = pvs;
+    }
+
+    /**
+     * Search a snapshot of GAME's board to each depth from 1 to DEPTH,
+     * with plain alpha-beta, then with move ordering, then with
+     * principal variation search as well, then with quiescence search
+     * as well, then with each selective-search technique in turn and
+     * with all of them, then with all of them and MTD(f) rather than
+     * PVS at the root, and then, if searches use more than one thread,
+     * with 2, 4, ... threads up to that number.  Print the number of
+     * positions visited and time taken by each, starting each search
+     * with an empty transposition table.
+     */
+    static void benchmark(Game game, int depth) {
+        boolean ordering = _ordering, pvs = _pvs, quiescence = _quiescence,
+            reducing = _reducing, futility = _futility,
+            extending = _extending, deepening = _deepening, mtdf = _mtdf;
+        int threads = _threads;
+        _threads = 1;
+        _ordering = _pvs = _quiescence = _mtdf = false;
+        setSelectivity("none");
+        benchmark(game, depth, "alpha-beta");
+        _ordering = true;
+        benchmark(game, depth, "ordered");
+        _pvs = true;
+        benchmark(game, depth, "pvs");
+        _quiescence = true;
+        benchmark(game, depth, "quiescence");
+        for (String technique : SELECTIVE_TECHNIQUES) {
+            setSelectivity(technique);
+            benchmark(game, depth, technique);
+        }
+        _mtdf = true;
+        benchmark(game, depth, "mtdf");
+        _mtdf = mtdf;
+        _ordering = ordering;
+        _pvs = pvs;
+        _quiescence = quiescence;
+        _reducing = reducing;
+        _futility = futility;
+        _extending = extending;
+        _deepening = deepening;
+        for (int n = 2; n < 2 * threads; n *= 2) {
+            _threads = Math.min(n, threads);
+            benchmark(game, depth, "threads " + _threads);
+        }
+        _threads = threads;
+    }
+
+    /**
+     * Search a snapshot of GAME's board to DEPTH with the current
+     * settings and an empty transposition table, and print the results
+     * labeled with NAME.
+     */
+    private static void benchmark(Game game, int depth, String name) {
+        Board board = game.board();
+        AI ai = new AI(game, board.whoseMove());
+        table().clear();
+        long start = System.currentTimeMillis();
+        ai.findMove(board.snapshot(), Math.min(depth, MAX_PLY),
+                    Long.MAX_VALUE);
+        long nodes = ai.nodes(), quiet = ai.quiescenceNodes();
+        for (AI helper : ai._helpers) {
+            nodes += helper.nodes();
+            quiet += helper.quiescenceNodes();
+        }
+        System.out.printf("%s: depth %d, %d nodes (%d quiescence),"
+                          + " %d msec, pv %s%n",
+                          name, depth, nodes, quiet,
+                          System.currentTimeMillis() - start,
+                          ai.principalVariation());
+        if (_reducing || _futility || _extending || _deepening) {
+            System.out.printf("    %s%n", ai.selectivityStatistics());
+        }
+        if (_mtdf) {
+            System.out.printf("    %d MTD(f) passes%n", ai._passes);
+        }
+        if (_bitbase != null) {
+            System.out.printf("    %d bitbase hits%n", ai._bitbaseHits);
+        }
+        if (_tablebase != null) {
+            System.out.printf("    %d tablebase hits%n", ai._tablebaseHits);
+        }
+    }
+
+    /**
+     * Selective-search settings compared by benchmark.
+     */
+    private static final String[] SELECTIVE_TECHNIQUES = {
+        "lmr", "futility", "extension", "iid", "all"
+    };
+
+    /**
+     * Ordering scores of the hash move, captures, and killer moves.
+     * History scores are below all of these.
+     */
+    private static final int
+        HASH_MOVE_SCORE = 1 << 30,
+        CAPTURE_SCORE = 1 << 29,
+        KILLER_SCORE = 1 << 28,
+        MAX_HISTORY = 1 << 27;
+
+    /**
+     * True iff searches should order their moves.
+     */
+    private static boolean _ordering = true;
+
+    /**
+     * True iff searches should use MTD(f) rather than principal variation
+     * search at the root.
+     */
+    private static boolean _mtdf;
+
+    /**
+     * True iff searches should use late move reductions, futility
+     * pruning, single-reply extensions, and internal iterative
+     * deepening, respectively.
+     */
+    private static boolean
+        _reducing = true, _futility = true, _extending = true,
+        _deepening = true;
+
+    /**
+     * True iff searches should end in quiescence searches.
+     */
+    private static boolean _quiescence = true;
+
+    /**
+     * True iff searches should use principal variation search and
+     * aspiration windows.
+     */
+    private static boolean _pvs = true;
+
+    /**
+     * Triangular table of principal variations: _pv[P][P.._pvLength[P]-1]
+     * is the best line found so far from the node being searched at ply P.
+     */
+    private final int[][] _pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+
+    /**
+     * End indices of the lines in _pv.
+     */
+    private final int[] _pvLength = new int[MAX_PLY + 1];
+
+    /**
+     * The principal variation of the last completed iteration.
+     */
+    private final int[] _bestLine = new int[MAX_PLY + 1];
+
+    /**
+     * Length of _bestLine.
+     */
+    private int _bestLineLength;
+
+    /**
+     * Two killer move ids for each ply: recent non-capturing moves that
+     * caused beta cutoffs at that ply, most recent first.
+     */
+    private final int[][] _killers = new int[MAX_PLY + 1][2];
+
+    /**
+     * History scores, indexed by the from and to squares of
+     * non-capturing moves: the sum of the squared depths at which
+     * the move caused a beta cutoff, decayed over time.
+     */
+    private final int[][] _history = new int[MAX_INDEX + 1][MAX_INDEX + 1];
+
+    /**
+     * Move lists for each ply of the search.
+     */
+    private final MoveBuffer[] _moves = new MoveBuffer[MAX_PLY + 1];
+
+    /**
+     * Size of the transposition table in megabytes.
+     */
+    private static int _hashMegabytes = TranspositionTable.DEFAULT_MEGABYTES;
+
+    /**
+     * The transposition table shared by all AIs, or null if not yet
+     * created.
+     */
+    private static TranspositionTable _sharedTable;
+
+    /**
+     * The transposition table used by the current search.
+     */
+    private TranspositionTable _table;
+
+    /**
+     * The time allowed to find each move (milliseconds).
+     */
+    private static long _timeLimit = DEFAULT_TIME_LIMIT;
+
+    /**
+     * Number of threads used by each search.
+     */
+    private static int _threads = 1;
+
+    /**
+     * The AIs that help me search, each on its own thread, with its own
+     * killer moves, history scores, and move lists.
+     */
+    private AI[] _helpers = new AI[0];
+
+    /**
+     * Set to tell a helper's search to stop.
+     */
+    private volatile boolean _stopRequested;
+
+    /**
+     * Time (as from System.currentTimeMillis) at which the current
+     * search must stop.  Set by another thread when a pondering search
+     * becomes a real one.
+     */
+    private volatile long _deadline;
+
+    /**
+     * True iff AIs should ponder.
+     */
+    private static boolean _pondering;
+
+    /**
+     * The endgame tablebase, or null if none.
+     */
+    private static Tablebase _tablebase;
+
+    /**
+     * The endgame bitbase, or null if none.
+     */
+    private static Bitbase _bitbase;
+
+    /**
+     * The thread running my pondering search, or null if none.
+     */
+    private Thread _ponderer;
+
+    /**
+     * Key of the position my pondering search is searching.
+     */
+    private long _ponderKey;
+
+    /**
+     * The result of my pondering search.
+     */
+    private volatile Move _ponderMove;
+
+    /**
+     * True iff the current search has run out of time.
+     */
+    private boolean _timeUp;
+
+    /**
+     * True iff the current search has completed an iteration, and so may
+     * stop when time runs out.
+     */
+    private boolean _canStop;
+
+    /**
+     * Number of positions visited by the current search.
+     */
+    private long _nodes;
+
+    /**
+     * Number of those positions visited by quiescence searches.
+     */
+    private long _quiescenceNodes;
+
+    /**
+     * Numbers of moves searched with late move reductions, of those
+     * re-searched at full depth, of moves skipped by futility pruning,
+     * of single replies extended, and of internal iterative deepening
+     * searches, in the current search.
+     */
+    private long _reduced, _researched, _pruned, _extended, _deepened;
+
+    /**
+     * Number of null-window searches of the root made by MTD(f) in the
+     * current search.
+     */
+    private long _passes;
+
+    /**
+     * Numbers of positions found in the tablebase and in the bitbase in
+     * the current search.
+     */
+    private long _tablebaseHits, _bitbaseHits;
 }
@@ -0,0 +1,155 @@
+package qirkat;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Tablebase.*;
+
+/**
+ * A compact companion to Tablebase produced by TablebaseGenerator: only
+ * the outcome (win, loss, or draw for the side to move), in 2 bits per
+ * position, small enough to be read entirely into memory and stay in
+ * the processor's caches.
+ * <p>
+ * Positions are indexed by the placement of the pieces (see
+ * Tablebase.placement) and the side to move, without the horizontal-move
+ * restrictions that Tablebase also indexes.  Since those can change the
+ * outcome, a position whose outcome differs among its restrictions is
+ * marked as such, and probing it finds nothing.
+ * <p>
+ * The file starts with a header: BITBASE_MAGIC, the maximum number of
+ * pieces, the number of tables, and then for each table the numbers of
+ * white and black pieces and of positions.  Then come the entries of
+ * each table in order, packed POSITIONS_PER_WORD to a big-endian long
+ * from the least significant bits up, each table starting a new long.
+ *
+ * @author Townsend Saunders
+ */
+class Bitbase {
+
+    /**
+     * First word of a bitbase file.
+     */
+    static final int BITBASE_MAGIC = 0x51424231;
+
+    /**
+     * Entry for positions whose outcome depends on the restrictions.
+     */
+    static final int MIXED = 3;
+
+    /**
+     * Number of positions in each long.
+     */
+    static final int POSITIONS_PER_WORD = Long.SIZE / 2;
+
+    /**
+     * The bitbase in the file named FILENAME.
+     */
+    Bitbase(String fileName) throws IOException {
+        try (DataInputStream in =
+             new DataInputStream(new BufferedInputStream
+                                 (new FileInputStream(fileName)))) {
+            if (in.readInt() != BITBASE_MAGIC) {
+                throw new IOException("not a bitbase: " + fileName);
+            }
+            _maxPieces = in.readInt();
+            int tables = in.readInt();
+            _offsets = new int[_maxPieces + 1][_maxPieces + 1];
+            for (int[] row : _offsets) {
+                Arrays.fill(row, -1);
+            }
+            int words = 0;
+            for (int t = 0; t < tables; t += 1) {
+                int whites = in.readInt(), blacks = in.readInt();
+                long positions = in.readLong();
+                _offsets[whites][blacks] = words;
+                words += (int) words(positions);
+            }
+            _entries = new long[words];
+            for (int k = 0; k < words; k += 1) {
+                _entries[k] = in.readLong();
+            }
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException
+                 excp) {
+            throw new IOException("bad bitbase header: " + fileName);
+        }
+    }
+
+    /**
+     * Return the largest number of pieces in my positions.
+     */
+    int maxPieces() {
+        return _maxPieces;
+    }
+
+    /**
+     * Return the outcome (Tablebase.WIN, LOSS, or DRAW) of the position
+     * on BOARD for the side to move, or Tablebase.MISSING if it has too
+     * many pieces or its outcome depends on its restrictions.
+     */
+    int probe(Board board) {
+        int white = board.pieces(WHITE), black = board.pieces(BLACK);
+        int whites = Integer.bitCount(white),
+            blacks = Integer.bitCount(black);
+        if (whites + blacks > _maxPieces || _offsets[whites][blacks] < 0) {
+            return MISSING;
+        }
+        long k = index(white, black, board.whoseMove());
+        int entry = get(_entries, _offsets[whites][blacks], k);
+        return entry == MIXED ? MISSING : entry;
+    }
+
+    /**
+     * Return the index, among the positions with the same numbers of
+     * white and black pieces, of the position with white pieces on the
+     * squares in the mask WHITE, black pieces on those in BLACK, and
+     * TOMOVE to move.
+     */
+    static long index(int white, int black, PieceColor toMove) {
+        return 2 * placement(white, black) + (toMove == BLACK ? 1 : 0);
+    }
+
+    /**
+     * Return the number of longs holding POSITIONS entries.
+     */
+    static long words(long positions) {
+        return (positions + POSITIONS_PER_WORD - 1) / POSITIONS_PER_WORD;
+    }
+
+    /**
+     * Return entry K of the table starting at word OFFSET of ENTRIES.
+     */
+    static int get(long[] entries, int offset, long k) {
+        long word = entries[offset + (int) (k / POSITIONS_PER_WORD)];
+        return (int) (word >>> (2 * (k % POSITIONS_PER_WORD))) & 3;
+    }
+
+    /**
+     * Set entry K of the table starting at word OFFSET of ENTRIES, which
+     * must be 0, to ENTRY.
+     */
+    static void set(long[] entries, int offset, long k, int entry) {
+        entries[offset + (int) (k / POSITIONS_PER_WORD)] |=
+            (long) entry << (2 * (k % POSITIONS_PER_WORD));
+    }
+
+    /**
+     * Largest number of pieces in my positions.
+     */
+    private final int _maxPieces;
+
+    /**
+     * _offsets[W][B] is the index in _entries of the first word of the
+     * table for W white and B black pieces, or -1 if there is none.
+     */
+    private final int[][] _offsets;
+
+    /**
+     * The entries of all my tables.
+     */
+    private final long[] _entries;
+}
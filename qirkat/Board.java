@@ -1,8 +1,8 @@
 package qirkat;
 
 import java.util.ArrayList;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.Arrays;
+import java.util.Random;
 
 import static qirkat.Move.*;
 import static qirkat.PieceColor.*;
@@ -20,23 +20,33 @@ import static qirkat.PieceColor.*;
  *
  * @author Townsend Saunders
  */
-class Board extends Observable {
+class Board {
 
     /**
      * A new, cleared board at the start of the game.
      */
     Board() {
         clear();
-        setChanged();
-        notifyObservers();
     }
     /**
-     * A copy of B.
+     * A copy of B, including its move history.
      */
     Board(Board b) {
         internalCopy(b);
     }
 
+    /**
+     * Return a new Board holding my current position (pieces, side to
+     * move, horizontal-move restrictions, and hash key) but no move
+     * history and no observers.  The result shares no mutable state
+     * with me, so it may be searched by another thread while I change.
+     */
+    Board snapshot() {
+        Board result = new Board();
+        result.copyPosition(this);
+        return result;
+    }
+
     /**
      * Return a constant view of me (allows any access method, but no
      * method that modifies it).
@@ -52,23 +62,17 @@ class Board extends Observable {
     void clear() {
         _whoseMove = WHITE;
         _gameOver = false;
-        PieceColor[][] newBoard = {{BLACK, BLACK, BLACK, BLACK, BLACK},
-                                   {BLACK, BLACK, BLACK, BLACK, BLACK},
-                                   {BLACK, BLACK, EMPTY, WHITE, WHITE},
-                                   {WHITE, WHITE, WHITE, WHITE, WHITE},
-                                   {WHITE, WHITE, WHITE, WHITE, WHITE}};
-
-        _board = newBoard;
+        _white = INITIAL_WHITE;
+        _black = INITIAL_BLACK;
         _lastMoves = new ArrayList<>();
-
-        _leftRight = new ArrayList<>();
-        for (int i = 0; i < 5 * 5; i++) {
-            ArrayList<String> empty = new ArrayList<>();
-            empty.add("e");
-            _leftRight.add(empty);
-        }
-        setChanged();
-        notifyObservers();
+        _noLeft = _noRight = 0;
+        _restrictionStack = new long[INITIAL_PLIES];
+        _keyStack = new long[INITIAL_PLIES];
+        _evaluationStack = new int[INITIAL_PLIES];
+        _ply = 0;
+        _key = computeKey();
+        _evaluation = computeEvaluation();
+        changed(ALL_SQUARES);
     }
 
 
@@ -80,70 +84,52 @@ class Board extends Observable {
     }
 
     /**
-     * Return row index in standard form, given the linearized index K.
+     * Return my board as an array of rows, top row (row 5) first.  The
+     * result is a fresh copy built from my piece masks.
      **/
-    int rowI(int k) {
-        int x = 5;
-        if (k < x) {
-            return 4;
-        }
-        if (k < 2 * x) {
-            return 3;
-        }
-        if (k < 3 * x) {
-            return 2;
-        }
-        if (k < 4 * x) {
-            return 1;
-        }
-        if (k < 5 * x) {
-            return 0;
-        }
-        return -1;
-    }
-
-    /**
-     * Return my board.
-     **/
-
     public PieceColor[][] getBoard() {
-        return _board;
+        PieceColor[][] result = new PieceColor[SIDE][SIDE];
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            result[SIDE - 1 - k / SIDE][k % SIDE] = get(k);
+        }
+        return result;
     }
 
     /**
-     * Return column index in standard form, given the linearized index K.
-     **/
-
-    int colI(int k) {
-        int x = 5;
-        if (k < x) {
-            return k;
-        }
-        if (k < 2 * x) {
-            return k - x;
-        }
-        if (k < 3 * x) {
-            return k - (2 * x);
-        }
-        if (k < 4 * x) {
-            return k - (3 * x);
-        }
-        if (k < 5 * x) {
-            return k - (4 * x);
-        }
-        return -1;
+     * Set my position to that of B, discarding my move history.  Unlike
+     * copy, this copies only a few words and reuses my own undo stacks,
+     * so a search thread can cheaply reset a Board it owns.
+     */
+    void copyPosition(Board b) {
+        _white = b._white;
+        _black = b._black;
+        _whoseMove = b._whoseMove;
+        _gameOver = b._gameOver;
+        _noLeft = b._noLeft;
+        _noRight = b._noRight;
+        _key = b._key;
+        _evaluation = b._evaluation;
+        _lastMoves.clear();
+        _ply = 0;
     }
 
-
     /**
      * Copy B into me.
      */
     private void internalCopy(Board b) {
-        _board = b._board;
+        _white = b._white;
+        _black = b._black;
         _whoseMove = b._whoseMove;
         _gameOver = b._gameOver;
-        _lastMoves = b._lastMoves;
-        _leftRight = b._leftRight;
+        _lastMoves = new ArrayList<>(b._lastMoves);
+        _noLeft = b._noLeft;
+        _noRight = b._noRight;
+        _restrictionStack = b._restrictionStack.clone();
+        _keyStack = b._keyStack.clone();
+        _evaluationStack = b._evaluationStack.clone();
+        _ply = b._ply;
+        _key = b._key;
+        _evaluation = b._evaluation;
     }
 
     /**
@@ -183,8 +169,134 @@ class Board extends Observable {
             }
         }
 
-        setChanged();
-        notifyObservers();
+        _key = computeKey();
+        _evaluation = computeEvaluation();
+        changed(ALL_SQUARES);
+    }
+
+    /**
+     * Set my position to have white pieces on the squares in the mask
+     * WHITE, black pieces on those in BLACK, pieces that may not move
+     * left or right on those in NOLEFT and NORIGHT, and NEXTMOVE to
+     * move, discarding my move history.  The masks must be consistent:
+     * no square both white and black, and restrictions only on occupied
+     * squares, at most one per square.
+     */
+    void setPosition(int white, int black, int noLeft, int noRight,
+                     PieceColor nextMove) {
+        _white = white;
+        _black = black;
+        _noLeft = noLeft;
+        _noRight = noRight;
+        _whoseMove = nextMove;
+        _gameOver = false;
+        _lastMoves.clear();
+        _ply = 0;
+        _key = computeKey();
+        _evaluation = computeEvaluation();
+        changed(ALL_SQUARES);
+    }
+
+    /**
+     * Return the Zobrist hash key of the current position, which covers
+     * the placement of pieces, the side to move, and the horizontal-move
+     * restrictions.
+     */
+    long key() {
+        return _key;
+    }
+
+    /**
+     * Return the Zobrist key of the current position computed from
+     * scratch.
+     */
+    long computeKey() {
+        long key = _whoseMove == BLACK ? BLACK_TO_MOVE_KEY : 0;
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            int bit = 1 << k;
+            if ((_white & bit) != 0) {
+                key ^= WHITE_KEYS[k];
+            } else if ((_black & bit) != 0) {
+                key ^= BLACK_KEYS[k];
+            }
+            if ((_noLeft & bit) != 0) {
+                key ^= NO_LEFT_KEYS[k];
+            }
+            if ((_noRight & bit) != 0) {
+                key ^= NO_RIGHT_KEYS[k];
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Return the static evaluation of the current position: positive if
+     * it favors white and negative if it favors black.  It is the sum,
+     * over white pieces less the sum over black pieces, of PIECE_VALUE,
+     * a bonus for the piece's square, a bonus for each empty square to
+     * which it could step, and a penalty if it is in its opponent's half
+     * of the board and can step nowhere.  Maintained incrementally by
+     * makeMoveUnchecked and unmakeMove.
+     */
+    int evaluation() {
+        return _evaluation;
+    }
+
+    /**
+     * Return the static evaluation of the current position computed from
+     * scratch.
+     */
+    int computeEvaluation() {
+        return evaluate(_white, _black, ALL_SQUARES);
+    }
+
+    /**
+     * Return the sum of the evaluation terms for the pieces among SQUARES
+     * in the position whose white and black pieces are WHITE and BLACK.
+     */
+    private static int evaluate(int white, int black, int squares) {
+        int occupied = white | black;
+        int result = 0;
+        for (int m = white & squares; m != 0; m &= m - 1) {
+            result += evaluate(WHITE, Integer.numberOfTrailingZeros(m),
+                               occupied);
+        }
+        for (int m = black & squares; m != 0; m &= m - 1) {
+            result -= evaluate(BLACK, Integer.numberOfTrailingZeros(m),
+                               occupied);
+        }
+        return result;
+    }
+
+    /**
+     * Return the evaluation term for a piece of color COLOR on the
+     * square with linearized index K, when OCCUPIED is the mask of
+     * occupied squares.
+     */
+    private static int evaluate(PieceColor color, int k, int occupied) {
+        int c = color.ordinal();
+        int open = STEP_MASKS[c][k] & ~occupied;
+        int result = PIECE_VALUE + SQUARE_VALUES[c][k]
+            + MOBILITY_VALUE * Integer.bitCount(open);
+        if (open == 0 && (ADVANCED[c] & (1 << k)) != 0) {
+            result -= IMMOBILE_PENALTY;
+        }
+        return result;
+    }
+
+    /**
+     * Update _evaluation after a change in the position whose white and
+     * black pieces were WHITE and BLACK.  Only the terms of pieces on or
+     * next to changed squares can differ.
+     */
+    private void updateEvaluation(int white, int black) {
+        int changed = (white ^ _white) | (black ^ _black);
+        int affected = 0;
+        for (int m = changed; m != 0; m &= m - 1) {
+            affected |= NEIGHBORS[Integer.numberOfTrailingZeros(m)];
+        }
+        _evaluation += evaluate(_white, _black, affected)
+            - evaluate(white, black, affected);
     }
 
     /**
@@ -209,10 +321,59 @@ class Board extends Observable {
      */
     PieceColor get(int k) {
         assert validSquare(k);
-        int row = rowI(k);
-        int col = colI(k);
-        return _board[row][col];
+        int bit = 1 << k;
+        if ((_white & bit) != 0) {
+            return WHITE;
+        } else if ((_black & bit) != 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
+        }
+    }
 
+    /**
+     * Return the mask of squares holding pieces of color C (which may
+     * be EMPTY, giving the unoccupied squares).
+     */
+    int pieces(PieceColor c) {
+        switch (c) {
+        case WHITE:
+            return _white;
+        case BLACK:
+            return _black;
+        default:
+            return ~(_white | _black) & ALL_SQUARES;
+        }
+    }
+
+    /**
+     * Return the mask of occupied squares.
+     */
+    int occupied() {
+        return _white | _black;
+    }
+
+    /**
+     * Return the mask of the squares whose pieces may not currently move
+     * left.
+     */
+    int noLeft() {
+        return _noLeft;
+    }
+
+    /**
+     * Return the mask of the squares whose pieces may not currently move
+     * right.
+     */
+    int noRight() {
+        return _noRight;
+    }
+
+    /**
+     * Return the number of squares whose contents are C.
+     */
+    int pieceCount(PieceColor c) {
+        return Integer.bitCount(pieces(c));
     }
 
     /**
@@ -229,11 +390,14 @@ class Board extends Observable {
      */
     private void set(int k, PieceColor v) {
         assert validSquare(k);
-        int row = rowI(k);
-        int col = colI(k);
-        _board[row][col] = v;
-
-
+        int bit = 1 << k;
+        _white &= ~bit;
+        _black &= ~bit;
+        if (v == WHITE) {
+            _white |= bit;
+        } else if (v == BLACK) {
+            _black |= bit;
+        }
     }
 
 
@@ -241,23 +405,12 @@ class Board extends Observable {
      * Return true iff MOV is legal on the current board.
      */
     boolean legalMove(Move mov) {
-        ArrayList<Move> moves = getMoves();
-        int to = mov.toIndex();
-        int from = mov.fromIndex();
-        int size = _leftRight.get(from).size();
-        if (mov.isLeftMove()
-                && _leftRight.get(from).get(size - 1).equals("L")) {
-            return false;
-        }
-        if (mov.isRightMove()
-                && _leftRight.get(mov.fromIndex()).get(size - 1).equals("R")) {
+        if (mov == null) {
             return false;
         }
-        if (validSquare(to) && this.get(to)
-                == EMPTY && this.get(from) == _whoseMove) {
-            return true;
-        }
-        return false;
+        MoveBuffer moves = new MoveBuffer();
+        getMoves(moves);
+        return moves.contains(mov.id());
     }
 
     /**
@@ -273,16 +426,30 @@ class Board extends Observable {
      * Add all legal moves from the current position to MOVES.
      */
     void getMoves(ArrayList<Move> moves) {
+        MoveBuffer buffer = new MoveBuffer();
+        getMoves(buffer);
+        for (int i = 0; i < buffer.size(); i += 1) {
+            moves.add(buffer.move(i));
+        }
+    }
+
+    /**
+     * Replace the contents of MOVES with all legal moves from the current
+     * position.  Does not allocate unless MOVES must grow.
+     */
+    void getMoves(MoveBuffer moves) {
+        moves.clear();
         if (gameOver()) {
             return;
         }
+        int own = pieces(_whoseMove);
         if (jumpPossible()) {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getJumps(moves, k);
+            for (int m = own; m != 0; m &= m - 1) {
+                getJumps(moves, Integer.numberOfTrailingZeros(m));
             }
         } else {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getMoves(moves, k);
+            for (int m = own; m != 0; m &= m - 1) {
+                getMoves(moves, Integer.numberOfTrailingZeros(m));
             }
         }
     }
@@ -291,161 +458,82 @@ class Board extends Observable {
      * given a linearized index K return the piece at that position.
      **/
     PieceColor board(int k) {
-        int rowN = rowI(k);
-        int colN = colI(k);
-        return _board[rowN][colN];
-
+        return get(k);
     }
 
     /**
      * Add all legal non-capturing moves from the position
      * with linearized index K to MOVES.
      */
-    private void getMoves(ArrayList<Move> moves, int k) {
-        moves.add(move(col(k), row(k)));
-        if (board(k) == WHITE) {
-            if (k > 3 * 5 + 4) {
-                return;
-            }
-            if (validSquare(k + 5)) {
-                if (board(k + 5) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k + 5), row(k + 5)));
-                }
-            }
-            if (k % 5 < 4) {
-                if (validSquare(k + 1) && board(k + 1) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k + 1), row(k + 1)));
-                }
-                if (k % 2 == 0) {
-                    if (validSquare(k + 6) && board(k + 6) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(k + 6), row(k + 6)));
-                    }
-                }
-            }
-            if (k % 5 > 0) {
-                if (validSquare(k - 1) && board(k - 1) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k - 1), row(k - 1)));
-                }
-                if (k % 2 == 0) {
-                    if (validSquare(k + 4) && board(k + 4) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(k + 4), row(k + 4)));
-                    }
-                }
-
-            }
-        } else if (board(k) == BLACK) {
-            getmovesBlack(moves, k);
-        }
-    }
-    /** Get moves for black piece given ArrayList MOVES and int K. **/
-    private void getmovesBlack(ArrayList<Move> moves, int k) {
-        if (k < 5) {
+    private void getMoves(MoveBuffer moves, int k) {
+        PieceColor p = board(k);
+        if (!p.isPiece()) {
             return;
         }
-        if (validSquare(k - 5)) {
-            if (board(k - 5) == EMPTY) {
-                moves.add(move(col(k), row(k), col(k - 5), row(k - 5)));
-            }
+        int targets = pieces(EMPTY);
+        if ((_noLeft & (1 << k)) != 0) {
+            targets &= ~(1 << (k - 1));
         }
-        if (k % 5 < 4) {
-            if (validSquare(k + 1) && board(k + 1) == EMPTY) {
-                moves.add(move(col(k), row(k), col(k + 1), row(k + 1)));
-            }
-            if (k % 2 == 0) {
-                if (validSquare(k - 6) && board(k - 6) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k - 6), row(k - 6)));
-                }
-            }
+        if ((_noRight & (1 << k)) != 0) {
+            targets &= ~(1 << (k + 1));
         }
-        if (k % 5 > 0) {
-            if (validSquare(k - 1) && board(k - 1) == EMPTY) {
-                moves.add(move(col(k), row(k), col(k - 1), row(k - 1)));
-            }
-            if (k % 2 == 0) {
-                if (validSquare(k - 4) && board(k - 4) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k + 4), row(k + 4)));
-                }
+        for (int to : STEPS[p.ordinal()][k]) {
+            if ((targets & (1 << to)) != 0) {
+                moves.add(move(k, to).id());
             }
         }
     }
 
-
-
     /**
      * Add all legal captures from the position with linearized index K
-     * to MOVES.
+     * to MOVES.  Each capture is a maximal jump sequence: one that ends
+     * only when no further jump is possible.
      */
-    private void getJumps(ArrayList<Move> moves, int k) {
-        if (!board(k).isPiece()) {
+    private void getJumps(MoveBuffer moves, int k) {
+        PieceColor p = board(k);
+        if (!p.isPiece()) {
             return;
         }
-        if (validSquare(k + 10) && board(k + 5).isPiece()
-                && board(k + 5) == board(k).opposite()) {
-            if (board(k + 10) == EMPTY) {
-                moves.add(move(col(k), row(k), col(k + 10), row(k + 10)));
-            }
-        }
-        if (validSquare(k - 10)
-                && board(k - 5).isPiece()
-                && board(k - 5) == board(k).opposite()) {
-            if (board(k - 10) == EMPTY) {
-                moves.add(move(col(k), row(k), col(k - 10), row(k - 10)));
-            }
-        }
-        if (k % 5 < 3) {
-            if (validSquare(k + 2) && board(k + 1).isPiece()
-                    && board(k + 1) == board(k).opposite()) {
-                if (board(k + 2) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k + 2), row(k + 2)));
-                }
-            }
-            if (k % 2 == 0) {
-                if (validSquare(k + 12) && board(k + 6).isPiece()
-                        && board(k + 6) == board(k).opposite()) {
-                    if (board(k + 12) == EMPTY) {
-                        moves.add(move(col(k), row(k),
-                                col(k + 12), row(k + 12)));
-                    }
-                }
-                if (validSquare(k - 8) && board(k - 4).isPiece()
-                        && board(k - 4) == board(k).opposite()) {
-                    if (board(k - 8) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(k - 8), row(k - 8)));
-                    }
-                }
-            }
-        }
-        getJumpsHelper(moves, k);
+        int white = _white, black = _black;
+        clearSquare(k);
+        _chain[0] = k;
+        getJumps(moves, p, 0);
+        _white = white;
+        _black = black;
     }
 
-    /** getJumps Helper function that takes in int K and MOVES. **/
-    private void getJumpsHelper(ArrayList<Move> moves, int k) {
-        if (k % 5 > 1) {
-            if (validSquare(k - 2) && board(k - 1).isPiece()
-                    && board(k - 1) == board(k).opposite()) {
-                if (board(k - 2) == EMPTY) {
-                    moves.add(move(col(k), row(k), col(k - 2), row(k - 2)));
-                }
+    /**
+     * Add to MOVES all maximal jump sequences for a piece of color P
+     * that starts with the DEPTH jumps recorded in _chain[0 .. DEPTH].
+     * The jumping piece is lifted off the board and the pieces it has
+     * captured so far are removed.  Restores the board before returning.
+     */
+    private void getJumps(MoveBuffer moves, PieceColor p, int depth) {
+        int k = _chain[depth];
+        int empty = pieces(EMPTY);
+        int[] jumps = JUMPS[k];
+        boolean extended = false;
+        for (int i = 0; i < jumps.length; i += 2) {
+            int over = jumps[i], to = jumps[i + 1];
+            if ((pieces(p.opposite()) & (1 << over)) != 0
+                && (empty & (1 << to)) != 0) {
+                extended = true;
+                clearSquare(over);
+                _chain[depth + 1] = to;
+                getJumps(moves, p, depth + 1);
+                set(over, p.opposite());
             }
-            if (k % 2 == 0) {
-                if (validSquare(k + 8) && board(k + 4).isPiece()
-                        && board(k + 4) == board(k).opposite()) {
-                    if (board(k + 8) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(k + 8), row(k + 8)));
-                    }
-                }
-                if (validSquare(k - 12) && board(k - 6).isPiece()
-                        && board(k - 6) == board(k).opposite()) {
-                    if (board(k - 12) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(k - 12),
-                                row(k - 12)));
-                    }
-                }
+        }
+        if (!extended && depth > 0) {
+            Move result = null;
+            for (int i = depth; i > 0; i -= 1) {
+                int from = _chain[i - 1], to = _chain[i];
+                result = move(from, to, result);
             }
+            moves.add(result.id());
         }
     }
 
-
     /**
      * Return true iff MOV is a valid jump sequence on the current board.
      * MOV must be a jump or null.  If ALLOWPARTIAL, allow jumps that
@@ -470,80 +558,28 @@ class Board extends Observable {
      * linearized index K.
      */
     boolean jumpPossible(int k) {
-        if (!board(k).isPiece()) {
-            return true;
-        }
-        if (validSquare(k + 10) && board(k + 5).isPiece()
-                && board(k + 5) == board(k).opposite()) {
-            if (board(k + 10) == EMPTY) {
-                return true;
-            }
+        PieceColor p = board(k);
+        if (!p.isPiece()) {
+            return false;
         }
-        if (validSquare(k - 10) && board(k - 5).isPiece()
-                && board(k - 5) == board(k).opposite()) {
-            if (board(k - 10) == EMPTY) {
+        int opponents = pieces(p.opposite());
+        int empty = pieces(EMPTY);
+        int[] jumps = JUMPS[k];
+        for (int i = 0; i < jumps.length; i += 2) {
+            if ((opponents & (1 << jumps[i])) != 0
+                && (empty & (1 << jumps[i + 1])) != 0) {
                 return true;
             }
         }
-
-        if (k % 5 < 3) {
-            if (validSquare(k + 2) && board(k + 1).isPiece()
-                    && board(k + 1) == board(k).opposite()) {
-                if (board(k + 2) == EMPTY) {
-                    return true;
-                }
-            }
-            if (k % 2 == 0) {
-                if (validSquare(k + 12) && board(k + 6).isPiece()
-                        && board(k + 6) == board(k).opposite()) {
-                    if (board(k + 12) == EMPTY) {
-                        return true;
-                    }
-                }
-                if (validSquare(k - 8) && board(k - 4).isPiece()
-                        && board(k - 4) == board(k).opposite()) {
-                    if (board(k - 8) == EMPTY) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return jumpPossibleHelper(k);
-    }
-    /** jumpPossible helper function ,returns a boolean given an int K. **/
-    boolean jumpPossibleHelper(int k) {
-        /** left horizontal moves **/
-        if (k % 5 > 1) {
-            if (validSquare(k - 2) && board(k - 1).isPiece()
-                    && board(k - 1) == board(k).opposite()) {
-                if (board(k - 2) == EMPTY) {
-                    return true;
-                }
-            }
-            if (k % 2 == 0) {
-                if (validSquare(k + 8) && board(k + 4).isPiece()
-                        && board(k + 4) == board(k).opposite()) {
-                    if (board(k + 8) == EMPTY) {
-                        return true;
-                    }
-                }
-                if (validSquare(k - 12) && board(k - 6).isPiece()
-                        && board(k - 6) == board(k).opposite()) {
-                    if (board(k - 12) == EMPTY) {
-                        return true;
-                    }
-                }
-            }
-        }
         return false;
     }
 
     /**
-     * Return true iff a jump is possible from the current board.
+     * Return true iff a jump is possible for the player to move.
      */
     boolean jumpPossible() {
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
+        for (int m = pieces(_whoseMove); m != 0; m &= m - 1) {
+            if (jumpPossible(Integer.numberOfTrailingZeros(m))) {
                 return true;
             }
         }
@@ -579,61 +615,116 @@ class Board extends Observable {
      */
     void makeMove(Move mov) {
         if (legalMove(mov)) {
-            if (mov.isJump()) {
-                int jumpK = mov.jumpedIndex();
-                int toK = mov.toIndex();
-                int fromK = mov.fromIndex();
-                set(toK, board(fromK));
-                set(jumpK, EMPTY);
-                set(fromK, EMPTY);
-                Move nextMove = mov;
-                while (nextMove.jumpTail() != null) {
-                    nextMove = nextMove.jumpTail();
-                    int nextJumpK = nextMove.jumpedIndex();
-                    int nextToK = nextMove.toIndex();
-                    int nextFromK = nextMove.fromIndex();
-                    set(nextToK, board(nextFromK));
-                    set(nextJumpK, EMPTY);
-                    set(nextFromK, EMPTY);
-                }
-                int to = nextMove.toIndex();
-                _leftRight.get(to).add("E");
-
-            } else {
-                int to = mov.toIndex();
-                if (mov.isLeftMove()) {
-                    _leftRight.get(to).add("R");
-                } else if (mov.isRightMove()) {
-                    _leftRight.get(to).add("L");
-                } else {
-                    _leftRight.get(to).add("E");
-                }
-                int fromK = mov.fromIndex();
-                set(to, board(fromK));
-                set(fromK, EMPTY);
+            int white = _white, black = _black;
+            makeMoveUnchecked(mov);
+            _lastMoves.add(mov);
+            changed((white ^ _white) | (black ^ _black));
+        }
+    }
 
+    /**
+     * Make the Move MOV, including all legs of a jump, on this Board
+     * without checking its legality, recording it in the move history,
+     * or notifying observers.  Intended for search, which generates only
+     * legal moves and reverts them with unmakeMove(MOV).
+     */
+    void makeMoveUnchecked(Move mov) {
+        pushUndoState();
+        int white = _white, black = _black;
+        long[] moverKeys = _whoseMove == WHITE ? WHITE_KEYS : BLACK_KEYS;
+        long[] capturedKeys = _whoseMove == WHITE ? BLACK_KEYS : WHITE_KEYS;
+        int from = mov.fromIndex();
+        long key = _key ^ BLACK_TO_MOVE_KEY;
+        Move last = mov;
+        if (mov.isJump()) {
+            for (Move m = mov; m != null; m = m.jumpTail()) {
+                int jumped = m.jumpedIndex();
+                clearSquare(jumped);
+                key ^= capturedKeys[jumped];
+                last = m;
             }
-            _whoseMove = _whoseMove.opposite();
-            _lastMoves.add(mov);
-            setChanged();
-            notifyObservers();
         }
+        int to = last.toIndex();
+        clearSquare(from);
+        set(to, _whoseMove);
+        key ^= moverKeys[from] ^ moverKeys[to];
+        int noLeft = _noLeft, noRight = _noRight;
+        int occupied = occupied() & ~(1 << to);
+        _noLeft &= occupied;
+        _noRight &= occupied;
+        if (mov.isLeftMove()) {
+            _noRight |= 1 << to;
+        } else if (mov.isRightMove()) {
+            _noLeft |= 1 << to;
+        }
+        for (int m = noLeft ^ _noLeft; m != 0; m &= m - 1) {
+            key ^= NO_LEFT_KEYS[Integer.numberOfTrailingZeros(m)];
+        }
+        for (int m = noRight ^ _noRight; m != 0; m &= m - 1) {
+            key ^= NO_RIGHT_KEYS[Integer.numberOfTrailingZeros(m)];
+        }
+        _key = key;
+        updateEvaluation(white, black);
+        _whoseMove = _whoseMove.opposite();
     }
 
     /**
-     * Go back to previous player's color and RETURN a piece color.
+     * Revert MOV, which must be the last move made on this Board by
+     * makeMoveUnchecked (or makeMove), restoring any captured pieces.
      */
-    private PieceColor lastColor() {
-        PieceColor back;
-        if (whoseMove() == WHITE) {
-            _whoseMove = BLACK;
-            back = WHITE;
-            return back;
-        } else {
-            _whoseMove = WHITE;
-            back = BLACK;
-            return back;
+    void unmakeMove(Move mov) {
+        _whoseMove = _whoseMove.opposite();
+        PieceColor captured = _whoseMove.opposite();
+        Move last = mov;
+        if (mov.isJump()) {
+            for (Move m = mov; m != null; m = m.jumpTail()) {
+                set(m.jumpedIndex(), captured);
+                last = m;
+            }
+        }
+        int to = last.toIndex();
+        popUndoState();
+        clearSquare(to);
+        set(mov.fromIndex(), _whoseMove);
+    }
+
+    /**
+     * Save the current horizontal-move restrictions, hash key, and
+     * evaluation on the per-ply stacks.
+     */
+    private void pushUndoState() {
+        if (_ply == _restrictionStack.length) {
+            _restrictionStack = Arrays.copyOf(_restrictionStack, 2 * _ply);
+            _keyStack = Arrays.copyOf(_keyStack, 2 * _ply);
+            _evaluationStack = Arrays.copyOf(_evaluationStack, 2 * _ply);
         }
+        _restrictionStack[_ply] = ((long) _noRight << Integer.SIZE)
+            | (_noLeft & 0xffffffffL);
+        _keyStack[_ply] = _key;
+        _evaluationStack[_ply] = _evaluation;
+        _ply += 1;
+    }
+
+    /**
+     * Restore the horizontal-move restrictions, hash key, and evaluation
+     * saved by the last call to pushUndoState.
+     */
+    private void popUndoState() {
+        _ply -= 1;
+        long saved = _restrictionStack[_ply];
+        _noLeft = (int) saved;
+        _noRight = (int) (saved >>> Integer.SIZE);
+        _key = _keyStack[_ply];
+        _evaluation = _evaluationStack[_ply];
+    }
+
+    /**
+     * Remove any piece on the square with linearized index K.
+     */
+    private void clearSquare(int k) {
+        int mask = ~(1 << k);
+        _white &= mask;
+        _black &= mask;
     }
 
     /**
@@ -641,47 +732,60 @@ class Board extends Observable {
      */
     void undo() {
         if (!_lastMoves.isEmpty()) {
-            Move lastMove = _lastMoves.get(_lastMoves.size() - 1);
-            PieceColor color = lastColor();
-            if (!lastMove.isJump()) {
-                char colOne = lastMove.col0();
-                char colTwo = lastMove.col1();
-                this.set(index(colOne, lastMove.row0()), whoseMove());
-                this.set(index(colTwo, lastMove.row1()), EMPTY);
-                int k = index(colTwo, lastMove.row1());
-                _leftRight.get(k).remove(_leftRight.get(k).size() - 1);
-            } else {
-                char colZero = lastMove.col0();
-                char colOne = lastMove.col1();
-                char jumped = lastMove.jumpedCol();
-                char rows = lastMove.row0();
-                this.set(index(colZero, lastMove.row0()), whoseMove());
-                this.set(index(jumped, lastMove.jumpedRow()), color);
-                this.set(index(colOne, lastMove.row1()), EMPTY);
-                Move nextMove = lastMove;
-                if (nextMove.jumpTail() == null) {
-                    int k = index(nextMove.col1(), nextMove.row1());
-                    _leftRight.get(k).remove(_leftRight.get(k).size() - 1);
-                }
-                while (nextMove.jumpTail() != null) {
-                    nextMove = nextMove.jumpTail();
-                    char drop = nextMove.jumpedCol();
-                    this.set(index(drop, nextMove.jumpedRow()), color);
-                    if (!(colZero == nextMove.col1()
-                            && rows == nextMove.row1())) {
-                        this.set(index(nextMove.col1(),
-                                nextMove.row1()), EMPTY);
-                    }
-                    if (nextMove.jumpTail() == null) {
-                        int k = index(nextMove.col1(), nextMove.row1());
-                        _leftRight.get(k).remove(_leftRight.get(k).size() - 1);
-                    }
-                }
-            }
+            int white = _white, black = _black;
+            unmakeMove(_lastMoves.remove(_lastMoves.size() - 1));
+            changed((white ^ _white) | (black ^ _black));
+        }
+    }
+
+    /**
+     * Arrange for LISTENER to be told of changes made to me by clear,
+     * setPieces, makeMove, and undo.  Moves made with makeMoveUnchecked
+     * are never reported.
+     */
+    void addListener(BoardListener listener) {
+        _listeners.add(listener);
+    }
+
+    /**
+     * Stop telling LISTENER of changes.
+     */
+    void removeListener(BoardListener listener) {
+        _listeners.remove(listener);
+    }
+
+    /**
+     * Stop notifying listeners until a matching call to
+     * resumeNotifications.  Calls may be nested.
+     */
+    void suspendNotifications() {
+        _suspensions += 1;
+    }
 
-            _lastMoves.remove(_lastMoves.size() - 1);
-            setChanged();
-            notifyObservers();
+    /**
+     * Undo one call to suspendNotifications.  When the last suspension
+     * ends, listeners receive one event covering every square changed
+     * in the meantime, if there were any.
+     */
+    void resumeNotifications() {
+        assert _suspensions > 0;
+        _suspensions -= 1;
+        changed(0);
+    }
+
+    /**
+     * Record that the squares in the mask SQUARES have changed, and
+     * notify my listeners of all pending changes unless notifications
+     * are suspended.
+     */
+    private void changed(int squares) {
+        _pendingChanges |= squares;
+        if (_suspensions == 0 && _pendingChanges != 0) {
+            int pending = _pendingChanges;
+            _pendingChanges = 0;
+            for (BoardListener listener : _listeners) {
+                listener.boardChanged(this, pending);
+            }
         }
     }
 
@@ -696,17 +800,14 @@ class Board extends Observable {
      */
     String toString(boolean legend) {
         StringBuilder builder = new StringBuilder();
-        builder.append("  ");
-        for (int i = 0; i < _board.length; i++) {
-            for (int j = 0; j < _board[i].length; j++) {
-                builder.append(_board[i][j].shortName() + "");
-                if (j < _board.length - 1) {
-                    builder.append(" ");
-                }
+        for (int r = SIDE - 1; r >= 0; r -= 1) {
+            builder.append(" ");
+            for (int c = 0; c < SIDE; c += 1) {
+                builder.append(" ");
+                builder.append(get(r * SIDE + c).shortName());
             }
-            if (i != _board.length - 1) {
+            if (r > 0) {
                 builder.append("\n");
-                builder.append("  ");
             }
         }
         return builder.toString();
@@ -729,9 +830,103 @@ class Board extends Observable {
      */
     private PieceColor _whoseMove;
     /**
-     * board that contains which position a piece is not allowed to move to.
+     * Objects to be told of changes to me.
      */
-    private ArrayList<ArrayList<String>> _leftRight;
+    private final ArrayList<BoardListener> _listeners = new ArrayList<>();
+
+    /**
+     * Number of unmatched calls to suspendNotifications.
+     */
+    private int _suspensions;
+
+    /**
+     * Squares changed since listeners were last notified.
+     */
+    private int _pendingChanges;
+
+    /**
+     * Squares visited by the jump sequence under construction in
+     * getJumps.  A sequence captures at most all opposing pieces.
+     */
+    private final int[] _chain = new int[MAX_INDEX + 2];
+
+    /**
+     * Masks of the squares whose pieces may not currently move left
+     * (because their last move was to the right) and right (because
+     * their last move was to the left).
+     */
+    private int _noLeft, _noRight;
+
+    /**
+     * Values of _noLeft and _noRight (packed into the low and high words)
+     * before each of the moves made so far, most recent at _ply - 1.
+     */
+    private long[] _restrictionStack;
+
+    /**
+     * Values of _key before each of the moves made so far.
+     */
+    private long[] _keyStack;
+
+    /**
+     * Values of _evaluation before each of the moves made so far.
+     */
+    private int[] _evaluationStack;
+
+    /**
+     * Number of moves currently recorded on _restrictionStack,
+     * _keyStack, and _evaluationStack.
+     */
+    private int _ply;
+
+    /**
+     * Initial capacity of _restrictionStack in plies.
+     */
+    private static final int INITIAL_PLIES = 64;
+
+    /**
+     * Zobrist hash key of the current position, maintained incrementally
+     * by makeMoveUnchecked and unmakeMove.
+     */
+    private long _key;
+
+    /**
+     * Static evaluation of the current position, maintained
+     * incrementally by makeMoveUnchecked and unmakeMove.
+     */
+    private int _evaluation;
+
+    /**
+     * Zobrist keys for a white piece, a black piece, a piece that may not
+     * move left, and a piece that may not move right on each square.
+     */
+    private static final long[]
+        WHITE_KEYS = new long[MAX_INDEX + 1],
+        BLACK_KEYS = new long[MAX_INDEX + 1],
+        NO_LEFT_KEYS = new long[MAX_INDEX + 1],
+        NO_RIGHT_KEYS = new long[MAX_INDEX + 1];
+
+    /**
+     * Zobrist key included when black is to move.
+     */
+    private static final long BLACK_TO_MOVE_KEY;
+
+    /**
+     * Seed for the Zobrist keys, fixed so that keys are the same from run
+     * to run.
+     */
+    private static final long ZOBRIST_SEED = 0x5eed_0f_9a17L;
+
+    static {
+        Random keys = new Random(ZOBRIST_SEED);
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            WHITE_KEYS[k] = keys.nextLong();
+            BLACK_KEYS[k] = keys.nextLong();
+            NO_LEFT_KEYS[k] = keys.nextLong();
+            NO_RIGHT_KEYS[k] = keys.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = keys.nextLong();
+    }
 
     /**
      * Set true when game ends.
@@ -739,9 +934,23 @@ class Board extends Observable {
     private boolean _gameOver;
 
     /**
-     * Game Board.
+     * Masks of the squares holding white and black pieces.  Bit K
+     * corresponds to the square with linearized index K.
      **/
-    private PieceColor[][] _board;
+    private int _white, _black;
+
+    /**
+     * Mask containing every square on the board.
+     */
+    static final int ALL_SQUARES = (1 << (MAX_INDEX + 1)) - 1;
+
+    /**
+     * Initial positions of the white and black pieces: rows 1-2 and
+     * d3-e3 for white, rows 4-5 and a3-b3 for black.
+     */
+    private static final int
+        INITIAL_WHITE = 0x3ff | (0x3 << 13),
+        INITIAL_BLACK = (0x3ff << 15) | (0x3 << 10);
 
     /**
      * Last moves.
@@ -749,27 +958,144 @@ class Board extends Observable {
     private ArrayList<Move> _lastMoves;
 
     /**
-     * Convenience value giving values of pieces at each ordinal position.
+     * STEPS[C.ordinal()][K] lists the squares to which a piece of color C
+     * at linearized index K may make a non-capturing move, if they are
+     * empty: forward, sideways, and (from even-numbered squares, which
+     * lie on the diagonals) diagonally forward.  Pieces on their last
+     * row have no non-capturing moves.  The EMPTY entries are empty.
      */
-    static final PieceColor[] PIECE_VALUES = PieceColor.values();
+    private static final int[][][] STEPS = new int[3][MAX_INDEX + 1][];
 
     /**
-     * One cannot create arrays of ArrayList<Move>, so we introduce
-     * a specialized private list type for this purpose.
+     * JUMPS[K] lists, in pairs, the square jumped over and the landing
+     * square for every capture from linearized index K in any direction,
+     * including the diagonals through even-numbered squares.
      */
-    private static class MoveList extends ArrayList<Move> {
+    private static final int[][] JUMPS = new int[MAX_INDEX + 1][];
+
+    static {
+        int[] dcs = { 0, 1, -1, 1, -1, 0, 1, -1 };
+        int[] drs = { 1, 0, 0, 1, 1, -1, -1, -1 };
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            int c = k % SIDE, r = k / SIDE;
+            int[] white = new int[5], black = new int[5], jumps = new int[16];
+            int nw, nb, nj;
+            nw = nb = nj = 0;
+            for (int d = 0; d < dcs.length; d += 1) {
+                int dc = dcs[d], dr = drs[d];
+                if (dc != 0 && dr != 0 && k % 2 != 0) {
+                    continue;
+                }
+                if (onBoard(c + dc, r + dr)) {
+                    int to = k + dr * SIDE + dc;
+                    if (dr >= 0 && r < SIDE - 1) {
+                        white[nw++] = to;
+                    }
+                    if (dr <= 0 && r > 0) {
+                        black[nb++] = to;
+                    }
+                }
+                if (onBoard(c + 2 * dc, r + 2 * dr)) {
+                    jumps[nj++] = k + dr * SIDE + dc;
+                    jumps[nj++] = k + 2 * (dr * SIDE + dc);
+                }
+            }
+            STEPS[EMPTY.ordinal()][k] = new int[0];
+            STEPS[WHITE.ordinal()][k] = Arrays.copyOf(white, nw);
+            STEPS[BLACK.ordinal()][k] = Arrays.copyOf(black, nb);
+            JUMPS[k] = Arrays.copyOf(jumps, nj);
+        }
     }
 
+    /**
+     * Value of one piece in evaluations.
+     */
+    static final int PIECE_VALUE = 100;
+
+    /**
+     * Evaluation bonuses for each empty square to which a piece could
+     * step, for each row a piece has advanced, for a square on the
+     * diagonals, and for a square in the center 3x3 block, and the
+     * penalty for an advanced piece that can step nowhere.
+     */
+    private static final int
+        MOBILITY_VALUE = 4,
+        ADVANCE_VALUE = 3,
+        DIAGONAL_VALUE = 2,
+        CENTER_VALUE = 2,
+        IMMOBILE_PENALTY = 10;
+
+    /**
+     * STEP_MASKS[C.ordinal()][K] is the mask of the squares in
+     * STEPS[C.ordinal()][K].
+     */
+    private static final int[][] STEP_MASKS = new int[3][MAX_INDEX + 1];
+
+    /**
+     * NEIGHBORS[K] is the mask of square K and of the squares from which
+     * a piece of either color could step to K.
+     */
+    private static final int[] NEIGHBORS = new int[MAX_INDEX + 1];
+
+    /**
+     * SQUARE_VALUES[C.ordinal()][K] is the evaluation bonus for a piece of
+     * color C on square K.
+     */
+    private static final int[][] SQUARE_VALUES = new int[3][MAX_INDEX + 1];
+
+    /**
+     * ADVANCED[C.ordinal()] is the mask of the squares in the opponent's
+     * half of the board for pieces of color C.
+     */
+    private static final int[] ADVANCED = {
+        0, 0x3ff << 15, 0x3ff
+    };
+
+    static {
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            NEIGHBORS[k] |= 1 << k;
+            for (int c = 0; c < STEPS.length; c += 1) {
+                for (int to : STEPS[c][k]) {
+                    STEP_MASKS[c][k] |= 1 << to;
+                    NEIGHBORS[to] |= 1 << k;
+                }
+            }
+            int col = k % SIDE, row = k / SIDE;
+            int value = ADVANCE_VALUE * row;
+            if (k % 2 == 0) {
+                value += DIAGONAL_VALUE;
+            }
+            if (0 < col && col < SIDE - 1 && 0 < row && row < SIDE - 1) {
+                value += CENTER_VALUE;
+            }
+            SQUARE_VALUES[WHITE.ordinal()][k] = value;
+            SQUARE_VALUES[BLACK.ordinal()][MAX_INDEX - k] = value;
+        }
+    }
+
+    /**
+     * Return true iff column C and row R (both counting from 0) are on
+     * the board.
+     */
+    private static boolean onBoard(int c, int r) {
+        return 0 <= c && c < SIDE && 0 <= r && r < SIDE;
+    }
+
+    /**
+     * Convenience value giving values of pieces at each ordinal position.
+     */
+    static final PieceColor[] PIECE_VALUES = PieceColor.values();
+
     /**
      * A read-only view of a Board.
      */
-    private class ConstantBoard extends Board implements Observer {
+    private class ConstantBoard extends Board implements BoardListener {
         /**
          * A constant view of this Board.
          */
         ConstantBoard() {
             super(Board.this);
-            Board.this.addObserver(this);
+            Board.this.addListener(this);
         }
 
         @Override
@@ -782,11 +1108,32 @@ class Board extends Observable {
             assert false;
         }
 
+        @Override
+        void copyPosition(Board b) {
+            assert false;
+        }
+
+        @Override
+        void setPosition(int white, int black, int noLeft, int noRight,
+                         PieceColor nextMove) {
+            assert false;
+        }
+
         @Override
         void makeMove(Move move) {
             assert false;
         }
 
+        @Override
+        void makeMoveUnchecked(Move move) {
+            assert false;
+        }
+
+        @Override
+        void unmakeMove(Move move) {
+            assert false;
+        }
+
         /**
          * Undo the last move.
          */
@@ -796,10 +1143,9 @@ class Board extends Observable {
         }
 
         @Override
-        public void update(Observable obs, Object arg) {
-            super.copy((Board) obs);
-            setChanged();
-            notifyObservers(arg);
+        public void boardChanged(Board board, int changed) {
+            super.copy(board);
+            super.changed(changed);
         }
     }
 }
@@ -0,0 +1,14 @@
+package qirkat;
+
+/** An object that is told when the contents of a Board change.
+ *  @author Townsend Saunders
+ */
+interface BoardListener {
+
+    /** Respond to a change in BOARD.  CHANGED is the mask of squares
+     *  (bit K for linearized index K) whose contents may differ from
+     *  those at the previous notification; it is Board.ALL_SQUARES
+     *  when the whole position was replaced. */
+    void boardChanged(Board board, int changed);
+
+}
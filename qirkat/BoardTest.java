@@ -33,6 +33,39 @@ public class BoardTest {
         assertEquals(INIT_BOARD, b0.toString());
     }
 
+    @Test
+    public void testCounts() {
+        Board b0 = new Board();
+        assertEquals(12, b0.pieceCount(PieceColor.WHITE));
+        assertEquals(12, b0.pieceCount(PieceColor.BLACK));
+        assertEquals(1, b0.pieceCount(PieceColor.EMPTY));
+        assertEquals(PieceColor.EMPTY, b0.getBoard()[2][2]);
+        assertEquals(PieceColor.BLACK, b0.getBoard()[0][0]);
+        assertEquals(PieceColor.WHITE, b0.getBoard()[2][4]);
+    }
+
+    @Test
+    public void testGetMoves() {
+        Board b0 = new Board();
+        assertEquals("[b2-c3, c2-c3, d2-c3, d3-c3]", b0.getMoves().toString());
+        b0.setPieces("----- ----- --b-- ----- -----", PieceColor.BLACK);
+        assertEquals("[c3-d3, c3-b3, c3-c2, c3-d2, c3-b2]",
+                     b0.getMoves().toString());
+        b0.setPieces("----- -w--- -bbb- ----- -----", PieceColor.WHITE);
+        assertEquals("[b2-b4-d2-d4, b2-d4-d2]", b0.getMoves().toString());
+    }
+
+    @Test
+    public void testMoveBuffer() {
+        Board b0 = new Board();
+        MoveBuffer moves = new MoveBuffer(1);
+        b0.getMoves(moves);
+        assertEquals(b0.getMoves().toString(), moves.toString());
+        b0.makeMoveUnchecked(moves.move(0));
+        b0.getMoves(moves);
+        assertEquals(b0.getMoves().toString(), moves.toString());
+    }
+
     @Test
     public void testMoves1() {
         Board b0 = new Board();
@@ -41,6 +74,142 @@ public class BoardTest {
     }
 
 
+    @Test
+    public void testMakeUnmake() {
+        Board b0 = new Board();
+        b0.setPieces("----- -w--- -bbb- ----- -----", PieceColor.WHITE);
+        String before = b0.toString();
+        Move jump = Move.parseMove("b2-b4-d2-d4");
+        b0.makeMoveUnchecked(jump);
+        assertEquals("  - - - - -\n  - - - w -\n  - - - - -\n"
+                     + "  - - - - -\n  - - - - -", b0.toString());
+        assertEquals(PieceColor.BLACK, b0.whoseMove());
+        b0.unmakeMove(jump);
+        assertEquals(before, b0.toString());
+        assertEquals(PieceColor.WHITE, b0.whoseMove());
+    }
+
+    @Test
+    public void testHorizontalRestriction() {
+        Board b0 = new Board();
+        b0.setPieces("----- -w--- ----- ----- ----b", PieceColor.WHITE);
+        b0.makeMove(Move.parseMove("b2-c2"));
+        b0.makeMove(Move.parseMove("e5-e4"));
+        assertFalse(b0.legalMove(Move.parseMove("c2-b2")));
+        assertEquals("[c2-c3, c2-d2]", b0.getMoves().toString());
+        b0.undo();
+        b0.undo();
+        assertTrue(b0.legalMove(Move.parseMove("b2-c2")));
+        assertTrue(b0.legalMove(Move.parseMove("b2-a2")));
+    }
+
+    @Test
+    public void testJumpChains() {
+        Board b0 = new Board();
+        b0.setPieces("----- -w--- -bbb- ----- -----", PieceColor.WHITE);
+        assertTrue(b0.legalMove(Move.parseMove("b2-b4-d2-d4")));
+        assertFalse("partial jump", b0.legalMove(Move.parseMove("b2-b4")));
+        assertFalse("partial jump", b0.legalMove(Move.parseMove("b2-b4-d2")));
+        b0.setPieces("----- ----- -bb-- ----- -----", PieceColor.WHITE);
+        assertTrue(b0.getMoves().isEmpty());
+    }
+
+    @Test
+    public void testZobristKey() {
+        Board b0 = new Board();
+        long start = b0.key();
+        for (String s : GAME1) {
+            b0.makeMove(Move.parseMove(s));
+            assertEquals("incremental key", b0.computeKey(), b0.key());
+        }
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b0.undo();
+        }
+        assertEquals(start, b0.key());
+
+        Board b1 = new Board();
+        b1.setPieces("----- -w--- ----- ----- ----b", PieceColor.WHITE);
+        Board b2 = new Board();
+        b2.setPieces("----- --w-- ----- ----b -----", PieceColor.WHITE);
+        b1.makeMove(Move.parseMove("b2-c2"));
+        b1.makeMove(Move.parseMove("e5-e4"));
+        assertEquals(b1.toString(), b2.toString());
+        assertNotEquals("restriction must change key", b1.key(), b2.key());
+    }
+
+    @Test
+    public void testEvaluation() {
+        Board b0 = new Board();
+        assertEquals("symmetric start", 0, b0.evaluation());
+        for (String s : GAME1) {
+            b0.makeMove(Move.parseMove(s));
+            assertEquals("incremental evaluation", b0.computeEvaluation(),
+                         b0.evaluation());
+        }
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b0.undo();
+        }
+        assertEquals(0, b0.evaluation());
+
+        Board b1 = new Board();
+        b1.setPieces("----- ----- ----- ----- --w--", PieceColor.WHITE);
+        Board b2 = new Board();
+        b2.setPieces("----- ----- ----- --w-- -----", PieceColor.WHITE);
+        assertTrue("stuck piece penalized",
+                   b1.evaluation() < b2.evaluation());
+    }
+
+    @Test
+    public void testSnapshot() {
+        Board live = new Board();
+        Board view = live.constantView();
+        makeMoves(live, new String[] { "c2-c3", "c4-c2" });
+        String position = live.toString();
+        long key = live.key();
+        Board snap = view.snapshot();
+        assertEquals(position, snap.toString());
+        assertEquals(key, snap.key());
+        assertEquals(live.whoseMove(), snap.whoseMove());
+
+        snap.makeMoveUnchecked(snap.getMoves().get(0));
+        assertEquals("live board changed", position, live.toString());
+        assertEquals(position, view.toString());
+        live.undo();
+        live.undo();
+        assertEquals(INIT_BOARD, view.toString());
+        assertNotEquals("snapshot changed", position, snap.toString());
+        snap.copyPosition(live);
+        assertEquals(INIT_BOARD, snap.toString());
+        assertEquals(live.key(), snap.key());
+    }
+
+    @Test
+    public void testListeners() {
+        Board b0 = new Board();
+        Board view = b0.constantView();
+        final int[] events = new int[2];
+        view.addListener((board, changed) -> {
+            events[0] += 1;
+            events[1] |= changed;
+        });
+        b0.makeMove(Move.parseMove("c2-c3"));
+        assertEquals(1, events[0]);
+        assertEquals((1 << 7) | (1 << 12), events[1]);
+
+        events[0] = events[1] = 0;
+        b0.suspendNotifications();
+        b0.makeMove(Move.parseMove("c4-c2"));
+        Move reply = b0.getMoves().get(0);
+        b0.makeMoveUnchecked(reply);
+        b0.unmakeMove(reply);
+        b0.undo();
+        assertEquals(0, events[0]);
+        b0.resumeNotifications();
+        assertEquals(1, events[0]);
+        assertEquals((1 << 7) | (1 << 12) | (1 << 17), events[1]);
+        assertEquals(b0.toString(), view.toString());
+    }
+
     @Test
     public void testUndo() {
         Board b0 = new Board();
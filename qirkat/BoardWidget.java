@@ -5,8 +5,7 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
-import java.util.Observer;
-import java.util.Observable;
+import java.util.function.Consumer;
 
 import java.awt.event.MouseEvent;
 
@@ -15,7 +14,7 @@ import static qirkat.PieceColor.*;
 /** Widget for displaying a Qirkat board.
  *  @author Townsend Saunders
  */
-class BoardWidget extends Pad implements Observer {
+class BoardWidget extends Pad implements BoardListener {
 
     /** Length of side of one square, in pixels. */
     static final int SQDIM = 50;
@@ -47,11 +46,17 @@ class BoardWidget extends Pad implements Observer {
     BoardWidget(Board model) {
         _model = model;
         setMouseHandler("click", this::readMove);
-        _model.addObserver(this);
+        _model.addListener(this);
         _dim = SQDIM * SIDE;
         setPreferredSize(_dim, _dim);
     }
 
+    /** Arrange for HANDLER to receive the name of each square (such as
+     *  "c3") that the user clicks. */
+    void setClickHandler(Consumer<String> handler) {
+        _clickHandler = handler;
+    }
+
     /** Indicate that the squares indicated by MOV are the currently selected
      *  squares for a pending move. */
     void indicateMove(Move mov) {
@@ -65,7 +70,8 @@ class BoardWidget extends Pad implements Observer {
         g.fillRect(0, 0, _dim, _dim);
     }
 
-    /** Notify observers of mouse's current position from click event WHERE. */
+    /** Notify the click handler of mouse's current position from click
+     *  event WHERE. */
     private void readMove(String unused, MouseEvent where) {
         int x = where.getX(), y = where.getY();
         char mouseCol, mouseRow;
@@ -73,15 +79,15 @@ class BoardWidget extends Pad implements Observer {
             mouseCol = (char) (x / SQDIM + 'a');
             mouseRow = (char) ((SQDIM * SIDE - y) / SQDIM + '1');
             if (mouseCol >= 'a' && mouseCol <= 'g'
-                && mouseRow >= '1' && mouseRow <= '7') {
-                setChanged();
-                notifyObservers("" + mouseCol + mouseRow);
+                && mouseRow >= '1' && mouseRow <= '7'
+                && _clickHandler != null) {
+                _clickHandler.accept("" + mouseCol + mouseRow);
             }
         }
     }
 
     @Override
-    public synchronized void update(Observable model, Object arg) {
+    public synchronized void boardChanged(Board model, int changed) {
         repaint();
     }
 
@@ -92,4 +98,7 @@ class BoardWidget extends Pad implements Observer {
 
     /** A partial Move indicating selected squares. */
     private Move _selectedMove;
+
+    /** Receives the names of clicked squares. */
+    private Consumer<String> _clickHandler;
 }
@@ -25,6 +25,8 @@ class Command {
         PIECEMOVE("([a-e][1-5](?:-[a-e][1-5])+)"),
         /* Valid at any time. */
         LOAD("load\\s+(\\S+)"),
+        BENCH("bench(?:\\s+(\\d+))?"),
+        EVALCHECK("evalcheck(?:\\s+(\\d+))?"),
         QUIT, CLEAR, DUMP, HELP,
         /* Special "commands" internally generated. */
         /** Syntax error in command. */
@@ -3,9 +3,6 @@ package qirkat;
 import ucb.gui2.TopLevel;
 import ucb.gui2.LayoutSpec;
 
-import java.util.Observable;
-import java.util.Observer;
-
 import java.io.Writer;
 import java.io.PrintWriter;
 import java.io.InputStream;
@@ -18,16 +15,16 @@ import static qirkat.PieceColor.*;
 /** The GUI for the Qirkat game.
  *  @author Townsend Saunders
  */
-class GUI extends TopLevel implements Observer, Reporter {
+class GUI extends TopLevel implements Reporter {
 
     /* The implementation strategy applied here is to make it as
      * unnecessary as possible for the rest of the program to know that it
      * is interacting with a GUI as opposed to a terminal.
      *
-     * To this end, we first have made Board observable, so that the
-     * GUI gets notified of changes to a Game's board and can interrogate
-     * it as needed, while the Game and Board themselves need not be aware
-     * that it is being watched.
+     * To this end, we first have made Board accept listeners, so that the
+     * GUI's BoardWidget gets notified of changes to a Game's board and can
+     * interrogate it as needed, while the Game and Board themselves need
+     * not be aware that it is being watched.
      *
      * Second, instead of creating a new API by which the GUI communicates
      * with a Game, we instead simply arrange to make the GUI's input look
@@ -61,8 +58,7 @@ class GUI extends TopLevel implements Observer, Reporter {
                            "ileft", 5, "itop", 5, "iright", 5,
                            "ibottom", 5));
         setMinimumSize(MIN_SIZE, MIN_SIZE);
-        _widget.addObserver(this);
-        _model.addObserver(this);
+        _widget.setClickHandler(this::movePiece);
     }
 
     /** Execute the "Quit" button function. */
@@ -115,15 +111,6 @@ class GUI extends TopLevel implements Observer, Reporter {
     public void moveMsg(String format, Object... args) {
     }
 
-    @Override
-    public void update(Observable obs, Object arg) {
-        if (obs == _model) {
-            int a = 5;
-        } else if (obs == _widget) {
-            int a = 6;
-        }
-    }
-
     /** Respond to a click on SQ. */
     private void movePiece(String sq) {
     }
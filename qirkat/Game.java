@@ -43,6 +43,48 @@ class Game {
         _reporter = reporter;
     }
 
+    /**
+     * Have the AIs in all games use the engines named by NAMES: either
+     * one engine name for both colors, or a white and a black engine
+     * name separated by a comma.  The engines are "ab" for AI's
+     * alpha-beta search (the default), "ybw" for YoungBrothersAI's, and
+     * "mcts" for MonteCarloAI's tree search.  Returns false, and changes
+     * nothing, if NAMES is not of this form.
+     */
+    static boolean setEngine(String names) {
+        String[] engines = names.split(",", -1);
+        if (engines.length > 2) {
+            return false;
+        }
+        for (String name : engines) {
+            switch (name) {
+            case "ab":
+            case "ybw":
+            case "mcts":
+                break;
+            default:
+                return false;
+            }
+        }
+        _whiteEngine = engines[0];
+        _blackEngine = engines[engines.length - 1];
+        return true;
+    }
+
+    /**
+     * Return a new automated player for COLOR, using its engine.
+     */
+    private Player newAI(PieceColor color) {
+        switch (color == WHITE ? _whiteEngine : _blackEngine) {
+        case "ybw":
+            return new YoungBrothersAI(this, color);
+        case "mcts":
+            return new MonteCarloAI(this, color);
+        default:
+            return new AI(this, color);
+        }
+    }
+
     /**
      * Run a session of Qirkat gaming.
      */
@@ -58,12 +100,12 @@ class Game {
             if (_whiteIsManual) {
                 white = new Manual(this, WHITE);
             } else {
-                white = new AI(this, WHITE);
+                white = newAI(WHITE);
             }
             if (_blackIsManual) {
                 black = new Manual(this, BLACK);
             } else {
-                black = new AI(this, BLACK);
+                black = newAI(BLACK);
             }
 
             while (_state != SETUP && !_board.gameOver()) {
@@ -80,6 +122,8 @@ class Game {
                     _board.makeMove(move);
                 }
             }
+            white.stopPondering();
+            black.stopPondering();
 
             if (_state == PLAYING) {
                 reportWinner();
@@ -141,6 +185,14 @@ class Game {
         return _randoms.nextInt(max);
     }
 
+    /**
+     * Return the seed last given to the 'seed' command, or a seed
+     * chosen at random if there has been none.
+     */
+    long seed() {
+        return _seed;
+    }
+
     /**
      * Report a move, using a message formed from FORMAT and ARGS as
      * for String.format.
@@ -275,6 +327,59 @@ class Game {
         System.out.println("===");
     }
 
+    /**
+     * Perform the command 'bench' or 'bench OPERANDS[0]', which reports
+     * the cost of searching the current position to depth OPERANDS[0]
+     * (default BENCH_DEPTH).
+     */
+    void doBench(String[] operands) {
+        int depth = BENCH_DEPTH;
+        if (operands[0] != null) {
+            depth = Integer.parseInt(operands[0]);
+        }
+        AI.benchmark(this, depth);
+        YoungBrothersAI.benchmark(this, depth);
+        MonteCarloAI.benchmark(this);
+    }
+
+    /**
+     * Perform the command 'evalcheck' or 'evalcheck OPERANDS[0]', which
+     * compares the board's incrementally maintained evaluation with one
+     * computed from scratch in every position reachable from the current
+     * one in at most OPERANDS[0] (default EVAL_CHECK_DEPTH) moves, and
+     * reports the number of positions checked and of mismatches.
+     */
+    void doEvalCheck(String[] operands) {
+        int depth = EVAL_CHECK_DEPTH;
+        if (operands[0] != null) {
+            depth = Integer.parseInt(operands[0]);
+        }
+        long[] counts = new long[2];
+        checkEvaluation(_board.snapshot(), depth, counts);
+        System.out.printf("evaluation %d; %d positions checked,"
+                          + " %d mismatches%n", _board.evaluation(),
+                          counts[0], counts[1]);
+    }
+
+    /**
+     * Compare BOARD's incremental and recomputed evaluations in every
+     * position reachable in at most DEPTH moves, adding the number of
+     * positions checked to COUNTS[0] and of mismatches to COUNTS[1].
+     */
+    private void checkEvaluation(Board board, int depth, long[] counts) {
+        counts[0] += 1;
+        if (board.evaluation() != board.computeEvaluation()) {
+            counts[1] += 1;
+        }
+        if (depth > 0) {
+            for (Move mov : board.getMoves()) {
+                board.makeMoveUnchecked(mov);
+                checkEvaluation(board, depth - 1, counts);
+                board.unmakeMove(mov);
+            }
+        }
+    }
+
     /**
      * Execute 'seed OPERANDS[0]' command, where the operand is a string
      * of decimal digits. Silently substitutes another value if
@@ -282,10 +387,11 @@ class Game {
      */
     void doSeed(String[] operands) {
         try {
-            _randoms.setSeed(Long.parseLong(operands[0]));
+            _seed = Long.parseLong(operands[0]);
         } catch (NumberFormatException e) {
-            _randoms.setSeed(Long.MAX_VALUE);
+            _seed = Long.MAX_VALUE;
         }
+        _randoms.setSeed(_seed);
     }
 
     /**
@@ -325,11 +431,23 @@ class Game {
         _commands.put(SETBOARD, this::doSet);
         _commands.put(START, this::doStart);
         _commands.put(LOAD, this::doLoad);
+        _commands.put(BENCH, this::doBench);
+        _commands.put(EVALCHECK, this::doEvalCheck);
         _commands.put(QUIT, this::doQuit);
         _commands.put(ERROR, this::doError);
         _commands.put(EOF, this::doQuit);
     }
 
+    /**
+     * Default search depth for the 'bench' command.
+     */
+    private static final int BENCH_DEPTH = 7;
+
+    /**
+     * Default search depth for the 'evalcheck' command.
+     */
+    private static final int EVAL_CHECK_DEPTH = 6;
+
     /**
      * Input source.
      */
@@ -341,18 +459,27 @@ class Game {
     private Board _board, _constBoard;
     /**
      * Indicate which players are manual players (as opposed to AIs).
+     * Initially, white is manual and black is an AI.
+     */
+    private boolean _whiteIsManual = true, _blackIsManual;
+    /**
+     * Names of the engines used by automated white and black players.
      */
-    private boolean _whiteIsManual, _blackIsManual;
+    private static String _whiteEngine = "ab", _blackEngine = "ab";
     /**
      * Current game state.
      */
-    private State _state;
+    private State _state = SETUP;
     /**
      * Used to send messages to the user.
      */
     private Reporter _reporter;
+    /**
+     * Seed given to the last 'seed' command, or a random one.
+     */
+    private long _seed = new Random().nextLong();
     /**
      * Source of pseudo-random numbers (used by AIs).
      */
-    private Random _randoms = new Random();
+    private Random _randoms = new Random(_seed);
 }
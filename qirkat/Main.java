@@ -4,13 +4,32 @@ import java.io.InputStreamReader;
 import java.io.IOException;
 import java.io.PipedReader;
 import java.io.PipedWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /** The main program for Qirkat.
  *  @author P. N. Hilfinger */
 public class Main {
 
     /** Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     *  if ARGS[k] is "--timing". */
+     *  if ARGS[k] is "--timing", and pondering on the opponent's time
+     *  if ARGS[k] is "--ponder".  "--time=MSEC" limits the time an AI
+     *  spends on each move to MSEC milliseconds, "--hash=MB" sets
+     *  the size of the AIs' transposition table to MB megabytes, and
+     *  "--threads=N" has each AI search with N threads.  "--engine=ybw"
+     *  uses the Young Brothers Wait parallel search and "--engine=mcts"
+     *  Monte Carlo tree search instead of the default alpha-beta search
+     *  ("--engine=ab"); "--engine=W,B" gives white's and black's
+     *  engines separately.  "--playouts=random" makes Monte Carlo
+     *  playouts uniformly random rather than capture-biased.
+     *  "--selective=LIST" limits the AI's selective-search techniques
+     *  to those in the comma-separated LIST (see AI.setSelectivity), and
+     *  "--driver=mtdf" has it search the root with MTD(f) rather than
+     *  the default principal variation search ("--driver=pvs").
+     *  "--tablebase=FILE" has the AI look up positions with few pieces
+     *  in the endgame tablebase FILE (see TablebaseGenerator), and
+     *  "--bitbase=FILE" has it look up just their outcomes in the
+     *  compact bitbase FILE, loaded into memory. */
     public static void main(String[] args) {
         boolean useGUI;
         System.out.println("CS61B Qirkat! Version 2.0");
@@ -24,8 +43,13 @@ public class Main {
             case "--timing":
                 _timing = true;
                 break;
+            case "--ponder":
+                AI.setPondering(true);
+                break;
             default:
-                usage();
+                if (!setOption(args[i])) {
+                    usage();
+                }
                 break;
             }
         }
@@ -60,10 +84,53 @@ public class Main {
         game.process();
     }
 
+    /** Process the option ARG, which has the form --NAME=VALUE.  Return
+     *  false if it is not a valid option. */
+    static boolean setOption(String arg) {
+        Matcher mat = OPTION.matcher(arg);
+        if (!mat.matches()) {
+            return false;
+        }
+        String value = mat.group(2);
+        try {
+            switch (mat.group(1)) {
+            case "time":
+                AI.setTimeLimit(Long.parseLong(value));
+                return true;
+            case "hash":
+                AI.setHashSize(Integer.parseInt(value));
+                return true;
+            case "threads":
+                AI.setThreads(Integer.parseInt(value));
+                return true;
+            case "engine":
+                return Game.setEngine(value);
+            case "selective":
+                return AI.setSelectivity(value);
+            case "driver":
+                return AI.setDriver(value);
+            case "playouts":
+                return MonteCarloAI.setPlayouts(value);
+            case "tablebase":
+                return AI.setTablebase(value);
+            case "bitbase":
+                return AI.setBitbase(value);
+            default:
+                return false;
+            }
+        } catch (NumberFormatException excp) {
+            return false;
+        }
+    }
+
     /** Give usage message and exit. */
     static void usage() {
         System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                           + " [--strict]");
+                           + " [--strict] [--time=MSEC] [--hash=MB]"
+                           + " [--threads=N] [--engine=E[,E]] [--ponder]"
+                           + " [--selective=LIST] [--driver=pvs|mtdf]"
+                           + " [--playouts=captures|random]"
+                           + " [--tablebase=FILE] [--bitbase=FILE]");
         System.exit(1);
     }
 
@@ -114,6 +181,9 @@ public class Main {
     /** Maximum operation time. */
     private static long _maxTime;
 
+    /** Syntax of options with values. */
+    private static final Pattern OPTION = Pattern.compile("--(\\w+)=(\\S+)");
+
     /** Size of the buffer for reading commands from a GUI (bytes). */
     private static final int BUFFER_LEN = 128;
 
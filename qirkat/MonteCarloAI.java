@@ -0,0 +1,549 @@
+package qirkat;
+
+import java.util.SplittableRandom;
+
+import static qirkat.PieceColor.*;
+
+/**
+ * A Player that computes its own moves by Monte Carlo tree search.  Each
+ * iteration descends the tree from the current position choosing
+ * children by UCT, adds the children of the node it reaches, plays the
+ * game out from one of them with fast random moves, and credits the
+ * result to every node on the path.  The move played is the root child
+ * visited most often.
+ * <p>
+ * Searches use AI's time limit and thread count.  With more than one
+ * thread, each thread grows its own tree from the same root (root
+ * parallelism), and their visit counts are summed.  Each tree lives in
+ * an arena of parallel primitive arrays, indexed by node number, and
+ * keeps the subtree for the position that actually arises when it next
+ * moves.  Each thread draws from its own SplittableRandom, split from
+ * one seeded with the Game's seed, so that single-threaded play is
+ * reproducible.
+ *
+ * @author Townsend Saunders
+ */
+class MonteCarloAI extends Player {
+
+    /**
+     * Total number of nodes in the trees of one player, divided among
+     * its threads.
+     */
+    private static final int ARENA_NODES = 1 << 20;
+
+    /**
+     * Minimum number of nodes in each tree.
+     */
+    private static final int MIN_TREE_NODES = 1 << 15;
+
+    /**
+     * Weight of the exploration term in UCT.
+     */
+    private static final double EXPLORATION = Math.sqrt(2);
+
+    /**
+     * Moves after which a playout stops and is scored by the static
+     * evaluation.
+     */
+    private static final int MAX_PLAYOUT = 200;
+
+    /**
+     * Number of iterations between checks of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 16;
+
+    /**
+     * A new MonteCarloAI for GAME that will play MYCOLOR.
+     */
+    MonteCarloAI(Game game, PieceColor myColor) {
+        super(game, myColor);
+        SplittableRandom seeds = new SplittableRandom(game.seed());
+        int threads = AI.threads();
+        _trees = new Tree[threads];
+        for (int k = 0; k < threads; k += 1) {
+            _trees[k] = new Tree(Math.max(MIN_TREE_NODES,
+                                          ARENA_NODES / threads),
+                                 seeds.split());
+        }
+    }
+
+    /**
+     * Play out with capture-biased moves if BIASED (the default), or
+     * with uniformly random moves otherwise.
+     */
+    static void setCaptureBias(boolean biased) {
+        _captureBias = biased;
+    }
+
+    /**
+     * Set the playout policy to the one named POLICY: "captures" for
+     * capture-biased playouts, or "random".  Returns false if there is
+     * no such policy.
+     */
+    static boolean setPlayouts(String policy) {
+        switch (policy) {
+        case "captures":
+            setCaptureBias(true);
+            return true;
+        case "random":
+            setCaptureBias(false);
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    @Override
+    Move myMove() {
+        Main.startTiming();
+        Move move = findMove(board().snapshot(), AI.timeLimit());
+        Main.endTiming();
+
+        if (move != null) {
+            game().reportMove("%s moves %s.", myColor(), move);
+        }
+        return move;
+    }
+
+    /**
+     * Return the best move found in position B by searching for about
+     * TIMELIMIT milliseconds, or null if there is no move.
+     */
+    Move findMove(Board b, long timeLimit) {
+        if (b.getMoves().isEmpty()) {
+            return null;
+        }
+        long deadline = System.currentTimeMillis() + timeLimit;
+        Thread[] threads = new Thread[_trees.length - 1];
+        for (int k = 0; k < threads.length; k += 1) {
+            Tree tree = _trees[k + 1];
+            Board root = b.snapshot();
+            threads[k] = new Thread(() -> tree.search(root, deadline));
+            threads[k].start();
+        }
+        _trees[0].search(b, deadline);
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        MoveBuffer visits = new MoveBuffer();
+        for (Tree tree : _trees) {
+            tree.addRootVisits(visits);
+        }
+        visits.selectBest(0);
+        return visits.move(0);
+    }
+
+    /**
+     * Return the number of playouts made by the last search.
+     */
+    long playouts() {
+        long result = 0;
+        for (Tree tree : _trees) {
+            result += tree._playouts;
+        }
+        return result;
+    }
+
+    /**
+     * Search a snapshot of GAME's board for AI's time limit with a new
+     * MonteCarloAI, and print the number of playouts made.
+     */
+    static void benchmark(Game game) {
+        Board board = game.board();
+        MonteCarloAI ai = new MonteCarloAI(game, board.whoseMove());
+        long start = System.currentTimeMillis();
+        Move best = ai.findMove(board.snapshot(), AI.timeLimit());
+        System.out.printf("mcts, threads %d: %d playouts, %d msec,"
+                          + " best %s%n", ai._trees.length, ai.playouts(),
+                          System.currentTimeMillis() - start, best);
+    }
+
+    /**
+     * Nodes of a search tree.  Node N's children, if it has been
+     * expanded, are the _count[N] consecutive nodes starting at
+     * _first[N].
+     */
+    private static final class Arena {
+
+        /**
+         * An arena with room for CAPACITY nodes.
+         */
+        Arena(int capacity) {
+            _parent = new int[capacity];
+            _move = new int[capacity];
+            _first = new int[capacity];
+            _count = new int[capacity];
+            _visits = new int[capacity];
+            _value = new double[capacity];
+        }
+
+        /**
+         * Return the number of nodes I can hold.
+         */
+        int capacity() {
+            return _parent.length;
+        }
+
+        /**
+         * Remove all nodes but a new root.
+         */
+        void clear() {
+            _size = 1;
+            _parent[0] = -1;
+            _move[0] = -1;
+            _first[0] = -1;
+            _count[0] = 0;
+            _visits[0] = 0;
+            _value[0] = 0;
+        }
+
+        /**
+         * The parent of each node, or -1 for the root.
+         */
+        final int[] _parent;
+
+        /**
+         * The id of the move leading to each node.
+         */
+        final int[] _move;
+
+        /**
+         * The first child of each node, or -1 if it has not been
+         * expanded.
+         */
+        final int[] _first;
+
+        /**
+         * The number of children of each expanded node: 0 if the
+         * position is lost for the side to move.
+         */
+        final int[] _count;
+
+        /**
+         * The number of iterations through each node.
+         */
+        final int[] _visits;
+
+        /**
+         * The total reward to the player who moved into each node from
+         * the iterations through it: 1 for a win and 0.5 for a draw.
+         */
+        final double[] _value;
+
+        /**
+         * Number of nodes in use.  The root is node 0.
+         */
+        int _size;
+    }
+
+    /**
+     * One search tree, grown by one thread.
+     */
+    private final class Tree {
+
+        /**
+         * A tree of up to CAPACITY nodes, drawing random numbers from
+         * RANDOM.
+         */
+        Tree(int capacity, SplittableRandom random) {
+            _nodes = new Arena(capacity);
+            _spare = new Arena(capacity);
+            _random = random;
+        }
+
+        /**
+         * Grow me from position ROOT until DEADLINE (as from
+         * System.currentTimeMillis), reusing the subtree for ROOT from
+         * my last search if there is one.
+         */
+        void search(Board root, long deadline) {
+            reroot(root);
+            _playouts = 0;
+            Board board = new Board();
+            do {
+                for (int i = 0; i < CLOCK_INTERVAL; i += 1) {
+                    iterate(board);
+                }
+            } while (System.currentTimeMillis() < deadline);
+        }
+
+        /**
+         * Add the visit count of each child of my root to the score of
+         * its move in VISITS, adding the move if needed.
+         */
+        void addRootVisits(MoveBuffer visits) {
+            Arena a = _nodes;
+            for (int c = a._first[0]; c < a._first[0] + a._count[0]; c += 1) {
+                int i;
+                for (i = 0; i < visits.size(); i += 1) {
+                    if (visits.get(i) == a._move[c]) {
+                        break;
+                    }
+                }
+                if (i == visits.size()) {
+                    visits.add(a._move[c]);
+                    visits.setScore(i, 0);
+                }
+                visits.setScore(i, visits.score(i) + a._visits[c]);
+            }
+        }
+
+        /**
+         * Make ROOT my root position.  If ROOT is the position after one
+         * of the children or grandchildren of my current root, keep that
+         * node's subtree; otherwise, start afresh.
+         */
+        private void reroot(Board root) {
+            int node = -1;
+            if (_root != null) {
+                node = find(root);
+            }
+            if (node > 0) {
+                compact(node);
+            } else {
+                _nodes.clear();
+            }
+            _root = root.snapshot();
+        }
+
+        /**
+         * Return the child or grandchild of my root whose position is
+         * TARGET, or -1 if there is none.
+         */
+        private int find(Board target) {
+            Arena a = _nodes;
+            Board board = new Board();
+            for (int c = a._first[0]; c < a._first[0] + a._count[0]; c += 1) {
+                board.copyPosition(_root);
+                board.makeMoveUnchecked(Move.get(a._move[c]));
+                if (samePosition(board, target)) {
+                    return c;
+                }
+                for (int g = a._first[c]; g < a._first[c] + a._count[c];
+                     g += 1) {
+                    Move mov = Move.get(a._move[g]);
+                    board.makeMoveUnchecked(mov);
+                    if (samePosition(board, target)) {
+                        return g;
+                    }
+                    board.unmakeMove(mov);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Return true iff B0 and B1 hold the same position (as far as
+         * their hash keys can tell).
+         */
+        private boolean samePosition(Board b0, Board b1) {
+            return b0.key() == b1.key();
+        }
+
+        /**
+         * Copy the subtree rooted at NODE into my spare arena, breadth
+         * first so that children stay consecutive, and make that my
+         * arena.
+         */
+        private void compact(int node) {
+            Arena from = _nodes, to = _spare;
+            int[] order = new int[from._size];
+            order[0] = node;
+            to._parent[0] = -1;
+            int size = 1;
+            for (int q = 0; q < size; q += 1) {
+                int old = order[q];
+                to._move[q] = from._move[old];
+                to._visits[q] = from._visits[old];
+                to._value[q] = from._value[old];
+                to._count[q] = from._count[old];
+                if (from._first[old] < 0) {
+                    to._first[q] = -1;
+                } else {
+                    to._first[q] = size;
+                    for (int j = 0; j < from._count[old]; j += 1) {
+                        order[size] = from._first[old] + j;
+                        to._parent[size] = q;
+                        size += 1;
+                    }
+                }
+            }
+            to._size = size;
+            _spare = from;
+            _nodes = to;
+        }
+
+        /**
+         * Perform one iteration of the search, using BOARD as scratch.
+         */
+        private void iterate(Board board) {
+            Arena a = _nodes;
+            board.copyPosition(_root);
+            int node = 0, depth = 0;
+            while (a._first[node] >= 0 && a._count[node] > 0) {
+                node = select(node);
+                board.makeMoveUnchecked(Move.get(a._move[node]));
+                depth += 1;
+            }
+            if (a._first[node] < 0) {
+                expand(node, board);
+                if (a._first[node] >= 0 && a._count[node] > 0) {
+                    node = a._first[node] + _random.nextInt(a._count[node]);
+                    board.makeMoveUnchecked(Move.get(a._move[node]));
+                    depth += 1;
+                }
+            }
+            PieceColor winner = playout(board);
+            _playouts += 1;
+
+            PieceColor rootMover = _root.whoseMove();
+            for (; node >= 0; node = a._parent[node], depth -= 1) {
+                a._visits[node] += 1;
+                PieceColor mover =
+                    depth % 2 == 1 ? rootMover : rootMover.opposite();
+                if (winner == mover) {
+                    a._value[node] += 1;
+                } else if (winner == EMPTY) {
+                    a._value[node] += 0.5;
+                }
+            }
+        }
+
+        /**
+         * Return the child of the expanded node NODE with the highest
+         * UCT score, or its first unvisited child.
+         */
+        private int select(int node) {
+            Arena a = _nodes;
+            double logVisits = Math.log(a._visits[node]);
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int c = a._first[node]; c < a._first[node] + a._count[node];
+                 c += 1) {
+                int n = a._visits[c];
+                if (n == 0) {
+                    return c;
+                }
+                double score = a._value[c] / n
+                    + EXPLORATION * Math.sqrt(logVisits / n);
+                if (score > bestScore) {
+                    best = c;
+                    bestScore = score;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Add the children of NODE, whose position is BOARD, if there is
+         * room.
+         */
+        private void expand(int node, Board board) {
+            Arena a = _nodes;
+            board.getMoves(_buffer);
+            int n = _buffer.size();
+            if (a._size + n > a.capacity()) {
+                return;
+            }
+            a._first[node] = a._size;
+            a._count[node] = n;
+            for (int i = 0; i < n; i += 1) {
+                int c = a._size + i;
+                a._parent[c] = node;
+                a._move[c] = _buffer.get(i);
+                a._first[c] = -1;
+                a._count[c] = 0;
+                a._visits[c] = 0;
+                a._value[c] = 0;
+            }
+            a._size += n;
+        }
+
+        /**
+         * Play out the game from BOARD and return the winner, or EMPTY if
+         * it is still undecided after MAX_PLAYOUT moves and the static
+         * evaluation is even.
+         */
+        private PieceColor playout(Board board) {
+            for (int ply = 0; ply < MAX_PLAYOUT; ply += 1) {
+                board.getMoves(_buffer);
+                if (_buffer.isEmpty()) {
+                    return board.whoseMove().opposite();
+                }
+                board.makeMoveUnchecked(chooseMove(_buffer));
+            }
+            int value = board.evaluation();
+            return value > 0 ? WHITE : value < 0 ? BLACK : EMPTY;
+        }
+
+        /**
+         * Return a random one of MOVES, which is not empty.  When playing
+         * out with capture bias, chooses only among the captures that
+         * take the most pieces.
+         */
+        private Move chooseMove(MoveBuffer moves) {
+            int n = moves.size();
+            if (_captureBias && moves.move(0).isJump()) {
+                int most = 0;
+                n = 0;
+                for (int i = 0; i < moves.size(); i += 1) {
+                    int captures = moves.move(i).captures();
+                    if (captures > most) {
+                        most = captures;
+                        n = 0;
+                    }
+                    if (captures == most) {
+                        moves.swap(i, n);
+                        n += 1;
+                    }
+                }
+            }
+            return moves.move(_random.nextInt(n));
+        }
+
+        /**
+         * My nodes.
+         */
+        private Arena _nodes;
+
+        /**
+         * An arena of the same size, into which compact copies.
+         */
+        private Arena _spare;
+
+        /**
+         * The position at my root, or null before my first search.
+         */
+        private Board _root;
+
+        /**
+         * Source of random numbers for my thread.
+         */
+        private final SplittableRandom _random;
+
+        /**
+         * Scratch move list.
+         */
+        private final MoveBuffer _buffer = new MoveBuffer();
+
+        /**
+         * Number of playouts made by my last search.
+         */
+        private long _playouts;
+    }
+
+    /**
+     * True iff playouts should favor the largest captures.
+     */
+    private static boolean _captureBias = true;
+
+    /**
+     * My search trees, one for each thread.
+     */
+    private final Tree[] _trees;
+}
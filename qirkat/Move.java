@@ -1,8 +1,8 @@
 package qirkat;
 
 import java.util.Formatter;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,61 +50,140 @@ class Move {
      * one. Moves themselves are immutable, and for any possible move,
      * there is exactly one object of type Move. */
 
-    /* To avoid creating Move objects that are not needed, we maintain a
-     * a static variable, _staged containing a Move object.  The move
-     * factory methods then sets the fields of this object before looking to
-     * to see if there is already a Move object with the same parameters.
-     * If there is, the move methods will simply return it, thus allowing
-     * _staged to be reused on the next call without having to create a
-     * new Move object.  Otherwise, we use the _staged object itself as the
-     * new Move, and set the variable to null so that we create a new
-     * Move on the next call to move. There is a drawback: since there
-     * is at most one _staged object at any time, at most one call to move
-     * may execute simultaneously.  Otherwise, two the methods may attempt
-     * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
-     */
+    /* Each Move has a dense integer id.  The single-leg Moves (steps,
+     * single jumps, and vestigial moves) are all created when the class
+     * is loaded and have ids FROM * NUM_SQUARES + TO, so that looking one
+     * up is an array index.  There are too many possible multi-jump
+     * chains (over a million) to create them all in advance, so each
+     * chain is created the first time it is requested and given the next
+     * unused id.  A chain is found from its first leg and its tail: every
+     * Move keeps a small array, indexed by the direction of the leg,
+     * of the chains that consist of a jump into its starting square
+     * followed by itself.
+     *
+     * The factory is safe to call from several threads at once.  The
+     * single moves never change after class initialization.  Looking up
+     * an existing chain reads the tail's _extensions array without
+     * locking; its slots are read and written atomically, and a chain is
+     * stored there only after it is registered, so a chain seen there is
+     * fully constructed and resolvable by id.  Only when a chain is
+     * missing does the caller lock its tail (so threads extending
+     * different tails do not contend), check again, and create it,
+     * taking its id from an atomic counter.  Ids therefore remain
+     * dense.  The registry mapping ids to
+     * Moves is a directory of fixed-size chunks whose slots are read and
+     * written atomically, so any thread may resolve an id that another
+     * thread obtained. */
 
     /**
      * The move constructor, made private to prevent its use except in
-     * this class.
-     */
-    private Move() {
+     * this class.  Creates the Move FROM-TO followed by NEXTJUMP, with
+     * id ID.
+     */
+    private Move(int from, int to, Move nextJump, int id) {
+        _col0 = col(from);
+        _row0 = row(from);
+        _col1 = col(to);
+        _row1 = row(to);
+        _fromIndex = (byte) from;
+        _toIndex = (byte) to;
+        _isJump = abs(_col0 - _col1) > 1 || abs(_row0 - _row1) > 1;
+        _nextJump = nextJump;
+        _id = id;
+        _captures = !_isJump ? 0
+            : nextJump == null ? 1 : nextJump._captures + 1;
     }
 
     /**
      * A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
      * followed by NEXTJUMP, if this move is a jump. Assumes the column
      * and row designations are valid and that NEXTJUMP is null for a
-     * non-capturing move.  Not thread-safe.
+     * non-capturing move.
      */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
-        if (_staged == null) {
-            _staged = new Move();
+        assert validSquare(col0, row0) && validSquare(col1, row1);
+        return move(index(col0, row0), index(col1, row1), nextJump);
+    }
+
+    /**
+     * Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
+     */
+    static Move move(char col0, char row0, char col1, char row1) {
+        return move(col0, row0, col1, row1, null);
+    }
+
+    /**
+     * Return the single move or jump between the squares with
+     * linearized indices FROM and TO.
+     */
+    static Move move(int from, int to) {
+        return SINGLE_MOVES[from * NUM_SQUARES + to];
+    }
+
+    /**
+     * Return the move between the squares with linearized indices FROM
+     * and TO, followed by NEXTJUMP, if this move is a jump.
+     */
+    static Move move(int from, int to, Move nextJump) {
+        Move first = move(from, to);
+        if (nextJump == null) {
+            return first;
         }
-        _staged.set(col0, row0, col1, row1, nextJump);
-        if (_staged.isJump() && nextJump != null && !nextJump.isJump()) {
-            throw new IllegalArgumentException("bad jump");
-        } else if (!_staged.isJump() && nextJump != null) {
+        if (!first.isJump() || !nextJump.isJump()
+            || nextJump.fromIndex() != to) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
-            _staged = null;
+        int dir = direction(from, to);
+        AtomicReferenceArray<Move> extensions = nextJump._extensions;
+        if (extensions != null) {
+            Move result = extensions.get(dir);
+            if (result != null) {
+                return result;
+            }
+        }
+        synchronized (nextJump) {
+            extensions = nextJump._extensions;
+            if (extensions == null) {
+                extensions = new AtomicReferenceArray<>(NUM_DIRECTIONS);
+                nextJump._extensions = extensions;
+            }
+            Move result = extensions.get(dir);
+            if (result == null) {
+                int id = _numMoves.getAndIncrement();
+                if (id >= MAX_MOVES) {
+                    throw new IllegalStateException("too many moves");
+                }
+                result = new Move(from, to, nextJump, id);
+                register(result);
+                extensions.set(dir, result);
+            }
+            return result;
         }
-        return result;
     }
 
     /**
-     * Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     * Not thread-safe.
+     * Record MOV in the registry under its id.
      */
-    static Move move(char col0, char row0, char col1, char row1) {
-        return move(col0, row0, col1, row1, null);
+    private static void register(Move mov) {
+        int chunk = mov._id >>> CHUNK_BITS;
+        AtomicReferenceArray<Move> moves = _movesById.get(chunk);
+        if (moves == null) {
+            _movesById.compareAndSet(chunk, null,
+                                     new AtomicReferenceArray<>(CHUNK_SIZE));
+            moves = _movesById.get(chunk);
+        }
+        moves.set(mov._id & (CHUNK_SIZE - 1), mov);
+    }
+
+    /**
+     * Return an index in 0 .. NUM_DIRECTIONS - 1 identifying the
+     * direction of the jump from linearized index FROM to TO.
+     */
+    private static int direction(int from, int to) {
+        int dc = Integer.signum(to % SIDE - from % SIDE),
+            dr = Integer.signum(to / SIDE - from / SIDE);
+        return (dr + 1) * 3 + dc + 1;
     }
 
     /**
@@ -136,7 +215,7 @@ class Move {
                     move0.col1(), move0.row1(), move(move1, move1._nextJump));
         } else {
             return move(move0.col0(), move0.row0(),
-                    move0.row1(), move0.col1(), move(move0._nextJump, move1));
+                    move0.col1(), move0.row1(), move(move0._nextJump, move1));
         }
 
     }
@@ -178,6 +257,37 @@ class Move {
         return (char) (k / STEP_R + '1');
     }
 
+    /**
+     * Return the Move whose id() is ID.
+     */
+    static Move get(int id) {
+        return _movesById.get(id >>> CHUNK_BITS).get(id & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Return the number of distinct Moves created so far.  All ids are
+     * less than this.
+     */
+    static int numMoves() {
+        return _numMoves.get();
+    }
+
+    /**
+     * Return my id: a small non-negative integer that is unique to this
+     * Move, so that Moves may be stored compactly as ints.  The ids of
+     * single moves are less than NUM_SINGLE_MOVES.
+     */
+    int id() {
+        return _id;
+    }
+
+    /**
+     * Return the number of pieces this move captures.
+     */
+    int captures() {
+        return _captures;
+    }
+
     /**
      * Return true iff this is a capturing move (a jump).
      */
@@ -297,7 +407,10 @@ class Move {
      * Return the linearized index of (jumpedCol(), jumpedRow()).
      */
     int jumpedIndex() {
-        return index(jumpedCol(), jumpedRow());
+        if (_isJump) {
+            return (_fromIndex + _toIndex) / 2;
+        }
+        return _toIndex;
     }
 
     /**
@@ -310,7 +423,7 @@ class Move {
 
     @Override
     public int hashCode() {
-        return (_fromIndex << 5) | _toIndex;
+        return _id;
     }
 
     @Override
@@ -370,67 +483,107 @@ class Move {
         }
     }
 
-    /**
-     * Set me to COL0 ROW0 - COL1 ROW1 - NEXTJUMP.
-     */
-    private void set(char col0, char row0, char col1, char row1,
-                     Move nextJump) {
-        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
-                && col0 <= 'e' && row0 <= '5' && col1 <= 'e' && row1 <= '5';
-        _col0 = col0;
-        _row0 = row0;
-        _col1 = col1;
-        _row1 = row1;
-        _fromIndex = (byte) index(col0, row0);
-        _toIndex = (byte) index(col1, row1);
-        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
-        _nextJump = nextJump;
-        assert (_isJump
-                && (nextJump == null
-                || (nextJump.isJump()
-                && col1 == nextJump.col0()
-                && row1 == nextJump.row0())))
-                || (!_isJump && nextJump == null);
-    }
-
     /**
      * Linearized indices.
      */
-    private byte _fromIndex, _toIndex;
+    private final byte _fromIndex, _toIndex;
 
     /**
      * True iff move is a jump.
      */
-    private boolean _isJump;
+    private final boolean _isJump;
 
     /**
      * From and to squares, or 0s if a pass.
      */
-    private char _col0, _row0, _col1, _row1;
+    private final char _col0, _row0, _col1, _row1;
 
     /**
      * For a jump, the Move representing the jumps following the
      * initial jump.
      */
-    private Move _nextJump;
+    private final Move _nextJump;
+
+    /**
+     * Number of jumps in this move.
+     */
+    private final int _captures;
+
+    /**
+     * My id, assigned in order of creation.
+     */
+    private final int _id;
+
+    /**
+     * Chains consisting of a jump into my starting square followed by me,
+     * indexed by the direction of that jump, or null if there are none
+     * yet.  Created and filled only while holding my lock.
+     */
+    private volatile AtomicReferenceArray<Move> _extensions;
 
     /* Used for the Move factory. */
 
     /**
-     * Holds the next Move object to be added to _internedMoves.
-     * The factory method move tentatively fills it in, and then returns
-     * it if it is unique (resetting _staged to null).
+     * Number of squares on the board.
+     */
+    private static final int NUM_SQUARES = MAX_INDEX + 1;
+
+    /**
+     * Number of single moves (including vestigial and geometrically
+     * impossible ones), which have the smallest ids.
+     */
+    static final int NUM_SINGLE_MOVES = NUM_SQUARES * NUM_SQUARES;
+
+    /**
+     * Number of entries in an _extensions array.
+     */
+    private static final int NUM_DIRECTIONS = 9;
+
+    /**
+     * The single moves, indexed by id.
+     */
+    private static final Move[] SINGLE_MOVES = new Move[NUM_SINGLE_MOVES];
+
+    /**
+     * Log2 of the number of ids in one chunk of the registry.
+     */
+    private static final int CHUNK_BITS = 12;
+
+    /**
+     * Number of ids in one chunk of the registry.
+     */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * Number of chunks in the registry, enough for every possible chain.
      */
-    private static Move _staged;
+    private static final int NUM_CHUNKS = 1 << 10;
 
     /**
-     * The set of all distinct moves generated so far.
+     * Largest number of Moves that may be created: all ids are less than
+     * this.  The last id the registry could hold is reserved, since
+     * TranspositionTable.NO_MOVE denotes no move.
      */
-    private static HashMap<Move, Move> _internedMoves = new HashMap<>();
+    static final int MAX_MOVES = NUM_CHUNKS * CHUNK_SIZE - 1;
 
     /**
-     * The identity function on Moves.
+     * All Moves created so far, indexed by id, in chunks of CHUNK_SIZE.
      */
-    static final Function<Move, Move> IDENTITY = k -> k;
+    private static final AtomicReferenceArray<AtomicReferenceArray<Move>>
+        _movesById = new AtomicReferenceArray<>(NUM_CHUNKS);
+
+    /**
+     * Number of Moves created so far; the id of the next one.
+     */
+    private static final AtomicInteger _numMoves =
+        new AtomicInteger(NUM_SINGLE_MOVES);
+
+    static {
+        for (int id = 0; id < NUM_SINGLE_MOVES; id += 1) {
+            SINGLE_MOVES[id] =
+                new Move(id / NUM_SQUARES, id % NUM_SQUARES, null, id);
+            register(SINGLE_MOVES[id]);
+        }
+    }
 
 }
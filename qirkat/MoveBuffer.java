@@ -0,0 +1,166 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/**
+ * A list of Moves stored as their integer ids (see Move.id()) in a
+ * preallocated array.  A search keeps one MoveBuffer per ply and clears
+ * and refills it at each node, so that once the buffers have grown to
+ * the largest move count they see, generating moves does not allocate.
+ *
+ * @author Townsend Saunders
+ */
+class MoveBuffer {
+
+    /**
+     * Default capacity, comfortably above the number of moves in any
+     * ordinary position.
+     */
+    static final int DEFAULT_CAPACITY = 128;
+
+    /**
+     * An empty MoveBuffer with the default capacity.
+     */
+    MoveBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * An empty MoveBuffer able to hold CAPACITY moves before growing.
+     */
+    MoveBuffer(int capacity) {
+        _moves = new int[capacity];
+        _scores = new int[capacity];
+    }
+
+    /**
+     * Remove all moves.
+     */
+    void clear() {
+        _size = 0;
+    }
+
+    /**
+     * Return the number of moves held.
+     */
+    int size() {
+        return _size;
+    }
+
+    /**
+     * Return true iff I hold no moves.
+     */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /**
+     * Append the move whose id is ID.
+     */
+    void add(int id) {
+        if (_size == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _size);
+            _scores = Arrays.copyOf(_scores, 2 * _size);
+        }
+        _moves[_size] = id;
+        _size += 1;
+    }
+
+    /**
+     * Return the id of move #I.
+     */
+    int get(int i) {
+        assert 0 <= i && i < _size;
+        return _moves[i];
+    }
+
+    /**
+     * Return move #I.
+     */
+    Move move(int i) {
+        return Move.get(get(i));
+    }
+
+    /**
+     * Return true iff I hold the move whose id is ID.
+     */
+    boolean contains(int id) {
+        for (int i = 0; i < _size; i += 1) {
+            if (_moves[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Set the ordering score of move #I to SCORE.
+     */
+    void setScore(int i, int score) {
+        _scores[i] = score;
+    }
+
+    /**
+     * Return the ordering score of move #I.
+     */
+    int score(int i) {
+        return _scores[i];
+    }
+
+    /**
+     * Exchange moves #I and #J, along with their scores.
+     */
+    void swap(int i, int j) {
+        int tmp = _moves[i];
+        _moves[i] = _moves[j];
+        _moves[j] = tmp;
+        tmp = _scores[i];
+        _scores[i] = _scores[j];
+        _scores[j] = tmp;
+    }
+
+    /**
+     * Move the highest-scoring of moves #I and following to position I.
+     * Calling this before examining each move in turn yields the moves in
+     * descending order of score, doing no work for moves never reached
+     * (as after a cutoff).
+     */
+    void selectBest(int i) {
+        int best = i;
+        for (int j = i + 1; j < _size; j += 1) {
+            if (_scores[j] > _scores[best]) {
+                best = j;
+            }
+        }
+        if (best != i) {
+            swap(i, best);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < _size; i += 1) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(move(i));
+        }
+        return result.append("]").toString();
+    }
+
+    /**
+     * The move ids, of which the first _size are valid.
+     */
+    private int[] _moves;
+
+    /**
+     * Ordering scores of the moves.
+     */
+    private int[] _scores;
+
+    /**
+     * Number of moves held.
+     */
+    private int _size;
+}
@@ -42,4 +42,53 @@ public class MoveTest {
         assertEquals("a3-a5-c3-e1", parseMove("a3-a5-c3-e1").toString());
     }
 
+    @Test
+    public void testConcat() {
+        Move m = move(move(move('a', '3', 'a', '5'), move('a', '5', 'c', '3')),
+                      move('c', '3', 'e', '1'));
+        assertEquals("a3-a5-c3-e1", m.toString());
+        assertSame(parseMove("a3-a5-c3-e1"), m);
+    }
+
+    @Test
+    public void testIds() {
+        Move single = move('a', '3', 'a', '5');
+        Move chain = parseMove("a3-a5-c3");
+        assertTrue(single.id() < NUM_SINGLE_MOVES);
+        assertTrue(chain.id() >= NUM_SINGLE_MOVES);
+        assertNotEquals(single.hashCode(), chain.hashCode());
+        assertSame(single, get(single.id()));
+        assertSame(chain, get(chain.id()));
+        assertSame(chain, move(index('a', '3'), index('a', '5'),
+                               move('a', '5', 'c', '3')));
+    }
+
+    @Test
+    public void testConcurrentFactory() throws InterruptedException {
+        final String[] chains = {
+            "a1-c1-e1-e3-c3", "a1-c1-e1-e3-e5", "b2-d4-d2-b4", "e5-c5-a5-a3",
+        };
+        final Move[][] results = new Move[4][chains.length];
+        Thread[] threads = new Thread[results.length];
+        for (int t = 0; t < threads.length; t += 1) {
+            final int me = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < chains.length; i += 1) {
+                    results[me][i] = parseMove(chains[i]);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < chains.length; i += 1) {
+            assertEquals(chains[i], results[0][i].toString());
+            for (Move[] r : results) {
+                assertSame(results[0][i], r[i]);
+            }
+            assertSame(results[0][i], get(results[0][i].id()));
+        }
+    }
+
 }
@@ -31,6 +31,12 @@ abstract class Player {
      *  board.whoseMove() == myColor and that !board.gameOver(). */
     abstract Move myMove();
 
+    /** Stop any thinking I am doing in the background, such as on my
+     *  opponent's time, and wait for it to end.  Called when the game
+     *  I am playing stops. */
+    void stopPondering() {
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
@@ -0,0 +1,357 @@
+package qirkat;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static qirkat.Move.MAX_INDEX;
+import static qirkat.PieceColor.*;
+
+/**
+ * An endgame tablebase produced by TablebaseGenerator: the outcome with
+ * best play (win, loss, or draw for the side to move) and, for wins and
+ * losses, the number of moves until the game ends, for every position
+ * with few enough pieces.
+ * <p>
+ * A position is identified by its material (the numbers of white and
+ * black pieces) and its index within the table for that material, which
+ * combines the combinatorial ranks of the white squares among all
+ * squares and of the black squares among those left, the horizontal-move
+ * restriction of each piece (none, no left, or no right), and the side
+ * to move.  Every combination is included, reachable or not.
+ * <p>
+ * The file starts with a header: MAGIC, the maximum number of pieces,
+ * the number of tables, and then for each table the numbers of white and
+ * black pieces, the byte offset of its entries, and their number.  Each
+ * entry is a big-endian short holding the outcome in its top two bits
+ * and the distance in the rest.  Each table is memory-mapped
+ * separately (a single mapping is limited to 2GB), so probes cost a page
+ * access rather than a read, and may come from any thread.
+ *
+ * @author Townsend Saunders
+ */
+class Tablebase {
+
+    /**
+     * Outcomes for the side to move.
+     */
+    static final int DRAW = 0, WIN = 1, LOSS = 2;
+
+    /**
+     * Returned by probe for positions not in the tablebase.
+     */
+    static final int MISSING = -1;
+
+    /**
+     * First word of a tablebase file.
+     */
+    static final int MAGIC = 0x51544231;
+
+    /**
+     * Number of bits in an entry holding the distance.
+     */
+    static final int DISTANCE_BITS = 14;
+
+    /**
+     * The tablebase in the file named FILENAME.
+     */
+    Tablebase(String fileName) throws IOException {
+        Path path = Paths.get(fileName);
+        try (FileChannel channel =
+             FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer header =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                            Math.min(channel.size(), MAX_HEADER_BYTES));
+            if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+                throw new IOException("not a tablebase: " + fileName);
+            }
+            _maxPieces = header.getInt(4);
+            int tables = header.getInt(8);
+            _tables = new ShortBuffer[_maxPieces + 1][_maxPieces + 1];
+            int p = HEADER_BYTES;
+            for (int t = 0; t < tables; t += 1) {
+                int whites = header.getInt(p), blacks = header.getInt(p + 4);
+                long offset = header.getLong(p + 8),
+                    entries = header.getLong(p + 16);
+                _tables[whites][blacks] =
+                    channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                                2 * entries).asShortBuffer();
+                p += TABLE_HEADER_BYTES;
+            }
+        } catch (IndexOutOfBoundsException excp) {
+            throw new IOException("bad tablebase header: " + fileName);
+        }
+    }
+
+    /**
+     * Return the largest number of pieces in my positions.
+     */
+    int maxPieces() {
+        return _maxPieces;
+    }
+
+    /**
+     * Return the entry for the position on BOARD (see outcome and
+     * distance), or MISSING if it has too many pieces.
+     */
+    int probe(Board board) {
+        int white = board.pieces(WHITE), black = board.pieces(BLACK);
+        int whites = Integer.bitCount(white),
+            blacks = Integer.bitCount(black);
+        if (whites + blacks > _maxPieces) {
+            return MISSING;
+        }
+        ShortBuffer table = _tables[whites][blacks];
+        if (table == null) {
+            return MISSING;
+        }
+        long k = index(white, black, board.noLeft(), board.noRight(),
+                       board.whoseMove());
+        return table.get((int) k) & 0xffff;
+    }
+
+    /**
+     * Return the outcome recorded in ENTRY.
+     */
+    static int outcome(int entry) {
+        return entry >>> DISTANCE_BITS;
+    }
+
+    /**
+     * Return the number of moves until the end of the game recorded in
+     * ENTRY.
+     */
+    static int distance(int entry) {
+        return entry & ((1 << DISTANCE_BITS) - 1);
+    }
+
+    /**
+     * Return the entry for OUTCOME in DISTANCE moves.
+     */
+    static int entry(int outcome, int distance) {
+        return (outcome << DISTANCE_BITS) | distance;
+    }
+
+    /**
+     * Return the number of positions with WHITES white and BLACKS black
+     * pieces.
+     */
+    static long size(int whites, int blacks) {
+        return placements(whites, blacks) * POWERS_OF_3[whites + blacks] * 2;
+    }
+
+    /**
+     * Return the number of ways to place WHITES white and BLACKS black
+     * pieces on the board.
+     */
+    static long placements(int whites, int blacks) {
+        return choose(SQUARES, whites) * choose(SQUARES - whites, blacks);
+    }
+
+    /**
+     * Return the index of the placement of white pieces on the squares
+     * in the mask WHITE and black pieces on those in BLACK among all
+     * placements of the same numbers of pieces: the rank of WHITE among
+     * sets of its size, followed by the rank of BLACK among sets of its
+     * size drawn from the remaining squares.
+     */
+    static long placement(int white, int black) {
+        return rank(white)
+            * choose(SQUARES - Integer.bitCount(white),
+                     Integer.bitCount(black))
+            + rank(compress(black, white));
+    }
+
+    /**
+     * Return the index, among the positions with the same numbers of
+     * white and black pieces, of the position with white pieces on the
+     * squares in the mask WHITE, black pieces on those in BLACK,
+     * restrictions NOLEFT and NORIGHT (as for Board.noLeft and
+     * Board.noRight), and TOMOVE to move.
+     */
+    static long index(int white, int black, int noLeft, int noRight,
+                      PieceColor toMove) {
+        int pieces = Integer.bitCount(white | black);
+        long result = placement(white, black);
+        int restrictions = 0, weight = 1;
+        for (int m = white | black; m != 0; m &= m - 1) {
+            int bit = m & -m;
+            if ((noLeft & bit) != 0) {
+                restrictions += weight;
+            } else if ((noRight & bit) != 0) {
+                restrictions += 2 * weight;
+            }
+            weight *= 3;
+        }
+        result = result * POWERS_OF_3[pieces] + restrictions;
+        return 2 * result + (toMove == BLACK ? 1 : 0);
+    }
+
+    /**
+     * Set BOARD to the position with index INDEX among those with WHITES
+     * white and BLACKS black pieces.  Inverse of index.
+     */
+    static void setPosition(Board board, int whites, int blacks,
+                            long index) {
+        PieceColor toMove = (index & 1) == 0 ? WHITE : BLACK;
+        index >>= 1;
+        int pieces = whites + blacks;
+        int restrictions = (int) (index % POWERS_OF_3[pieces]);
+        index /= POWERS_OF_3[pieces];
+        long blackRanks = choose(SQUARES - whites, blacks);
+        int white = unrank(index / blackRanks, whites);
+        int black = expand(unrank(index % blackRanks, blacks), white);
+        setPosition(board, white, black, restrictions, toMove);
+    }
+
+    /**
+     * Set BOARD to the position with white pieces on the squares in the
+     * mask WHITE, black pieces on those in BLACK, TOMOVE to move, and
+     * restrictions whose index (the base-3 number whose digits, from
+     * the least significant, are 0 for none, 1 for no left move, and 2
+     * for no right move, one per piece in increasing order of square)
+     * is RESTRICTIONS.
+     */
+    static void setPosition(Board board, int white, int black,
+                            int restrictions, PieceColor toMove) {
+        int noLeft = 0, noRight = 0;
+        for (int m = white | black; m != 0; m &= m - 1) {
+            int bit = m & -m;
+            if (restrictions % 3 == 1) {
+                noLeft |= bit;
+            } else if (restrictions % 3 == 2) {
+                noRight |= bit;
+            }
+            restrictions /= 3;
+        }
+        board.setPosition(white, black, noLeft, noRight, toMove);
+    }
+
+    /**
+     * Return the rank of the set of squares in MASK among all sets of
+     * the same size, in colexicographic order.
+     */
+    private static long rank(int mask) {
+        long result = 0;
+        int i = 1;
+        for (int m = mask; m != 0; m &= m - 1, i += 1) {
+            result += choose(Integer.numberOfTrailingZeros(m), i);
+        }
+        return result;
+    }
+
+    /**
+     * Return the set of SIZE squares whose rank is RANK.  Inverse of
+     * rank.
+     */
+    private static int unrank(long rank, int size) {
+        int result = 0;
+        int sq = SQUARES;
+        for (int i = size; i > 0; i -= 1) {
+            sq -= 1;
+            while (choose(sq, i) > rank) {
+                sq -= 1;
+            }
+            result |= 1 << sq;
+            rank -= choose(sq, i);
+        }
+        return result;
+    }
+
+    /**
+     * Return MASK with the squares in REMOVED squeezed out, so that each
+     * square's number drops by the number of squares in REMOVED below
+     * it.  MASK and REMOVED must not intersect.
+     */
+    private static int compress(int mask, int removed) {
+        int result = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            int sq = Integer.numberOfTrailingZeros(m);
+            int below = Integer.bitCount(removed & ((1 << sq) - 1));
+            result |= 1 << (sq - below);
+        }
+        return result;
+    }
+
+    /**
+     * Return the mask whose compression (see compress) with the squares
+     * in REMOVED squeezed out is MASK.
+     */
+    private static int expand(int mask, int removed) {
+        int result = 0;
+        int sq = 0;
+        for (int k = 0; k < SQUARES; k += 1) {
+            if ((removed & (1 << k)) != 0) {
+                continue;
+            }
+            if ((mask & (1 << sq)) != 0) {
+                result |= 1 << k;
+            }
+            sq += 1;
+        }
+        return result;
+    }
+
+    /**
+     * Return N choose K, or 0 if K > N.
+     */
+    static long choose(int n, int k) {
+        return k > n ? 0 : BINOMIALS[n][k];
+    }
+
+    /**
+     * Bytes in the file header before the table descriptions, and in
+     * each table description.
+     */
+    static final int HEADER_BYTES = 12, TABLE_HEADER_BYTES = 24;
+
+    /**
+     * An upper bound on the bytes in the file header.
+     */
+    private static final int MAX_HEADER_BYTES = 4096;
+
+    /**
+     * Number of squares.
+     */
+    private static final int SQUARES = MAX_INDEX + 1;
+
+    /**
+     * BINOMIALS[N][K] is N choose K.
+     */
+    private static final long[][] BINOMIALS =
+        new long[SQUARES + 1][SQUARES + 1];
+
+    /**
+     * POWERS_OF_3[K] is 3 to the K.
+     */
+    private static final long[] POWERS_OF_3 = new long[SQUARES + 1];
+
+    static {
+        for (int n = 0; n <= SQUARES; n += 1) {
+            BINOMIALS[n][0] = 1;
+            for (int k = 1; k <= n; k += 1) {
+                BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1]
+                    + (k < n ? BINOMIALS[n - 1][k] : 0);
+            }
+        }
+        POWERS_OF_3[0] = 1;
+        for (int k = 1; k <= SQUARES; k += 1) {
+            POWERS_OF_3[k] = 3 * POWERS_OF_3[k - 1];
+        }
+    }
+
+    /**
+     * _tables[W][B] holds the mapped entries for positions with W white
+     * and B black pieces, or is null if there are none.
+     */
+    private final ShortBuffer[][] _tables;
+
+    /**
+     * Largest number of pieces in my positions.
+     */
+    private final int _maxPieces;
+}
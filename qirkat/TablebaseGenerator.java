@@ -0,0 +1,369 @@
+package qirkat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Bitbase.BITBASE_MAGIC;
+import static qirkat.Tablebase.*;
+
+/**
+ * Generates the endgame tablebase read by Tablebase, and optionally the
+ * bitbase read by Bitbase, by retrograde analysis: the tables for each
+ * total number of pieces are solved in increasing order, so that every
+ * capture leads to a table that is already solved.  Within a table,
+ * pass P finds the positions won or lost in exactly P moves: a position
+ * is won in P if some move leads to a position lost in P - 1, and lost
+ * in P if every move leads to a position won, in at most P - 1 and in
+ * P - 1 for at least one.  Passes continue until one finds nothing new
+ * and no smaller table holds a longer distance; the positions left are
+ * draws.  Each pass is divided among several threads.
+ * <p>
+ * Every table is held in memory until all are written, and a table may
+ * not have more entries than an array, which in practice limits the
+ * tablebase to 5 pieces (about 2GB).
+ *
+ * @author Townsend Saunders
+ */
+public class TablebaseGenerator {
+
+    /**
+     * Write the tablebase for all positions with at most ARGS[0] pieces
+     * to the file ARGS[1], using ARGS[2] threads (default 1), and, if
+     * ARGS[3] is present, the matching bitbase to the file ARGS[3].
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 4) {
+            usage();
+        }
+        try {
+            int maxPieces = Integer.parseInt(args[0]);
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            if (maxPieces < 1 || threads < 1) {
+                usage();
+            }
+            TablebaseGenerator generator =
+                new TablebaseGenerator(maxPieces, threads);
+            generator.generate(true);
+            generator.write(args[1]);
+            if (args.length > 3) {
+                generator.writeBitbase(args[3]);
+            }
+        } catch (NumberFormatException excp) {
+            usage();
+        } catch (IllegalArgumentException excp) {
+            System.err.printf("Cannot generate %s pieces: %s%n", args[0],
+                              excp.getMessage());
+            System.exit(1);
+        } catch (IOException excp) {
+            System.err.printf("Could not write tables: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        } catch (InterruptedException excp) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Give usage message and exit.
+     */
+    private static void usage() {
+        System.err.println("Usage: java qirkat.TablebaseGenerator PIECES"
+                           + " FILE [THREADS [BITBASEFILE]]");
+        System.exit(1);
+    }
+
+    /**
+     * A generator for positions with at most MAXPIECES pieces, using
+     * THREADS threads.
+     */
+    TablebaseGenerator(int maxPieces, int threads) {
+        _maxPieces = maxPieces;
+        _threads = threads;
+        _solved = new short[maxPieces + 1][maxPieces + 1][];
+    }
+
+    /**
+     * Solve all my tables, reporting the size and time of each on the
+     * standard output iff REPORT.
+     */
+    void generate(boolean report) throws InterruptedException {
+        for (int total = 1; total <= _maxPieces; total += 1) {
+            for (int whites = 0; whites <= total; whites += 1) {
+                long size = size(whites, total - whites);
+                if (size > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("table too large");
+                }
+                long start = System.currentTimeMillis();
+                solve(whites, total - whites);
+                if (report) {
+                    System.out.printf("%d-%d: %d positions, %d msec%n",
+                                      whites, total - whites, size,
+                                      System.currentTimeMillis() - start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the entries for positions with WHITES white and BLACKS
+     * black pieces, indexed as by Tablebase.index, or null if they have
+     * not been solved.
+     */
+    short[] table(int whites, int blacks) {
+        return _solved[whites][blacks];
+    }
+
+    /**
+     * Write my tables to the file named FILENAME in the format read by
+     * Tablebase.
+     */
+    void write(String fileName) throws IOException {
+        ArrayList<int[]> tables = new ArrayList<>();
+        for (int total = 1; total <= _maxPieces; total += 1) {
+            for (int whites = 0; whites <= total; whites += 1) {
+                tables.add(new int[] { whites, total - whites });
+            }
+        }
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream
+                                  (new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(_maxPieces);
+            out.writeInt(tables.size());
+            long offset = HEADER_BYTES + TABLE_HEADER_BYTES * tables.size();
+            for (int[] t : tables) {
+                short[] entries = _solved[t[0]][t[1]];
+                out.writeInt(t[0]);
+                out.writeInt(t[1]);
+                out.writeLong(offset);
+                out.writeLong(entries.length);
+                offset += 2L * entries.length;
+            }
+            for (int[] t : tables) {
+                for (short e : _solved[t[0]][t[1]]) {
+                    out.writeShort(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the outcomes of the positions in my tables to the file named
+     * FILENAME in the format read by Bitbase.
+     */
+    void writeBitbase(String fileName) throws IOException {
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream
+                                  (new FileOutputStream(fileName)))) {
+            out.writeInt(BITBASE_MAGIC);
+            out.writeInt(_maxPieces);
+            out.writeInt((_maxPieces + 1) * (_maxPieces + 2) / 2 - 1);
+            for (int total = 1; total <= _maxPieces; total += 1) {
+                for (int whites = 0; whites <= total; whites += 1) {
+                    out.writeInt(whites);
+                    out.writeInt(total - whites);
+                    out.writeLong(2 * placements(whites, total - whites));
+                }
+            }
+            for (int total = 1; total <= _maxPieces; total += 1) {
+                for (int whites = 0; whites <= total; whites += 1) {
+                    for (long word : bitbase(whites, total - whites)) {
+                        out.writeLong(word);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the entries, packed as for Bitbase, of the positions with
+     * WHITES white and BLACKS black pieces: their outcomes, or
+     * Bitbase.MIXED for those whose outcomes depend on their
+     * restrictions.
+     */
+    private long[] bitbase(int whites, int blacks) {
+        short[] entries = _solved[whites][blacks];
+        long positions = 2 * placements(whites, blacks);
+        long restrictions = entries.length / positions;
+        long[] result = new long[(int) Bitbase.words(positions)];
+        for (long k = 0; k < positions; k += 1) {
+            long placement = k / 2, side = k % 2;
+            int first = outcome(entries[(int) (2 * placement * restrictions
+                                               + side)] & 0xffff);
+            int outcome = first;
+            for (long r = 1; r < restrictions && outcome == first; r += 1) {
+                int e = entries[(int) (2 * (placement * restrictions + r)
+                                       + side)] & 0xffff;
+                if (outcome(e) != first) {
+                    outcome = Bitbase.MIXED;
+                }
+            }
+            Bitbase.set(result, 0, k, outcome);
+        }
+        return result;
+    }
+
+    /**
+     * Solve the table for positions with WHITES white and BLACKS black
+     * pieces, assuming all smaller tables are solved.
+     */
+    private void solve(int whites, int blacks) throws InterruptedException {
+        short[] entries = new short[(int) size(whites, blacks)];
+        Arrays.fill(entries, UNKNOWN);
+        _solved[whites][blacks] = entries;
+        int longest = 0;
+        for (int total = 1; total < whites + blacks; total += 1) {
+            longest = Math.max(longest, _longest[total]);
+        }
+        int found;
+        int pass = 0;
+        do {
+            found = runPass(whites, blacks, pass);
+            pass += 1;
+        } while (found > 0 || pass <= longest + 1);
+        int maxDistance = 0;
+        for (int k = 0; k < entries.length; k += 1) {
+            if (entries[k] == UNKNOWN) {
+                entries[k] = (short) entry(DRAW, 0);
+            } else {
+                maxDistance = Math.max(maxDistance, distance(entries[k]));
+            }
+        }
+        _longest[whites + blacks] =
+            Math.max(_longest[whites + blacks], maxDistance);
+    }
+
+    /**
+     * Perform pass PASS over the table for WHITES white and BLACKS black
+     * pieces, dividing it among my threads, and return the number of
+     * positions resolved.
+     */
+    private int runPass(int whites, int blacks, int pass)
+        throws InterruptedException {
+        int size = _solved[whites][blacks].length;
+        Thread[] threads = new Thread[_threads];
+        int[] found = new int[_threads];
+        for (int t = 0; t < _threads; t += 1) {
+            int t0 = t;
+            int from = (int) ((long) size * t / _threads),
+                to = (int) ((long) size * (t + 1) / _threads);
+            threads[t] = new Thread(() ->
+                found[t0] = scan(whites, blacks, pass, from, to));
+            threads[t].start();
+        }
+        int result = 0;
+        for (int t = 0; t < _threads; t += 1) {
+            threads[t].join();
+            result += found[t];
+        }
+        return result;
+    }
+
+    /**
+     * Perform pass PASS over the positions with indices FROM <= K < TO
+     * in the table for WHITES white and BLACKS black pieces, and return
+     * the number resolved.  Entries found by other threads during the
+     * same pass are ignored, since their distances are PASS.
+     */
+    private int scan(int whites, int blacks, int pass, int from, int to) {
+        short[] entries = _solved[whites][blacks];
+        Board board = new Board();
+        MoveBuffer moves = new MoveBuffer();
+        int found = 0;
+        for (int k = from; k < to; k += 1) {
+            if (entries[k] != UNKNOWN) {
+                continue;
+            }
+            setPosition(board, whites, blacks, k);
+            board.getMoves(moves);
+            int result;
+            if (pass == 0) {
+                result = moves.isEmpty() ? entry(LOSS, 0) : UNKNOWN;
+            } else {
+                result = resolve(board, moves, entries, pass);
+            }
+            if (result != UNKNOWN) {
+                entries[k] = (short) result;
+                found += 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Return the entry for the position on BOARD, whose legal moves
+     * are MOVES, if it is won or lost in exactly PASS moves, and
+     * otherwise UNKNOWN.  ENTRIES is the table holding BOARD.
+     */
+    private int resolve(Board board, MoveBuffer moves, short[] entries,
+                        int pass) {
+        boolean allWon = true;
+        int longestWin = -1;
+        for (int i = 0; i < moves.size(); i += 1) {
+            Move mov = moves.move(i);
+            board.makeMoveUnchecked(mov);
+            int e = lookup(board, entries, pass);
+            board.unmakeMove(mov);
+            if (e == UNKNOWN) {
+                allWon = false;
+            } else if (outcome(e) == LOSS) {
+                if (distance(e) == pass - 1) {
+                    return entry(WIN, pass);
+                }
+                allWon = false;
+            } else if (outcome(e) == WIN) {
+                longestWin = Math.max(longestWin, distance(e));
+            } else {
+                allWon = false;
+            }
+        }
+        return allWon && longestWin == pass - 1 ? entry(LOSS, pass)
+            : UNKNOWN;
+    }
+
+    /**
+     * Return the entry for the position on BOARD, or UNKNOWN if it is in
+     * the table ENTRIES and not resolved before pass PASS.
+     */
+    private int lookup(Board board, short[] entries, int pass) {
+        int white = board.pieces(WHITE), black = board.pieces(BLACK);
+        short[] table =
+            _solved[Integer.bitCount(white)][Integer.bitCount(black)];
+        int e = table[(int) index(white, black, board.noLeft(),
+                                  board.noRight(), board.whoseMove())];
+        if (e == UNKNOWN || table == entries && distance(e) >= pass) {
+            return UNKNOWN;
+        }
+        return e & 0xffff;
+    }
+
+    /**
+     * Marks entries not yet resolved.
+     */
+    private static final short UNKNOWN = -1;
+
+    /**
+     * Largest number of pieces to generate.
+     */
+    private final int _maxPieces;
+
+    /**
+     * Number of threads for each pass.
+     */
+    private final int _threads;
+
+    /**
+     * _solved[W][B] holds the entries for W white and B black pieces.
+     */
+    private final short[][][] _solved;
+
+    /**
+     * _longest[N] is the largest distance in the tables with N pieces.
+     */
+    private final int[] _longest = new int[Move.MAX_INDEX + 2];
+}
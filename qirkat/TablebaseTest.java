@@ -0,0 +1,125 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Tablebase.*;
+
+/** Tests of the Tablebase, Bitbase, and TablebaseGenerator classes.
+ *  @author
+ */
+public class TablebaseTest {
+
+    @Test
+    public void testIndex() {
+        Board b = new Board();
+        Random random = new Random(61);
+        for (int whites = 0; whites <= 3; whites += 1) {
+            for (int blacks = 0; blacks <= 3; blacks += 1) {
+                long size = size(whites, blacks);
+                for (int i = 0; i < 200; i += 1) {
+                    long k = (long) (random.nextDouble() * size);
+                    setPosition(b, whites, blacks, k);
+                    assertEquals(whites, Integer.bitCount(b.pieces(WHITE)));
+                    assertEquals(blacks, Integer.bitCount(b.pieces(BLACK)));
+                    assertEquals(k, index(b.pieces(WHITE), b.pieces(BLACK),
+                                          b.noLeft(), b.noRight(),
+                                          b.whoseMove()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGenerate() throws InterruptedException {
+        TablebaseGenerator generator = new TablebaseGenerator(2, 2);
+        generator.generate(false);
+        short[] table = generator.table(1, 1);
+        Board b = new Board();
+        for (int k = 0; k < table.length; k += 1) {
+            setPosition(b, 1, 1, k);
+            int e = table[k] & 0xffff;
+            if (outcome(e) == DRAW) {
+                assertEquals(b.toString(), 0, forced(b, 8));
+            } else {
+                int sign = outcome(e) == WIN ? 1 : -1;
+                assertEquals(b.toString(), sign, forced(b, distance(e)));
+                if (distance(e) > 0) {
+                    assertNotEquals(b.toString(), sign,
+                                    forced(b, distance(e) - 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testProbe() throws IOException, InterruptedException {
+        TablebaseGenerator generator = new TablebaseGenerator(2, 1);
+        generator.generate(false);
+        File file = File.createTempFile("qirkat", ".tb");
+        file.deleteOnExit();
+        generator.write(file.getPath());
+        Tablebase tablebase = new Tablebase(file.getPath());
+        assertEquals(2, tablebase.maxPieces());
+        Board b = new Board();
+        assertEquals(MISSING, tablebase.probe(b));
+        short[] table = generator.table(0, 2);
+        for (int k = 0; k < table.length; k += 1) {
+            setPosition(b, 0, 2, k);
+            assertEquals(table[k] & 0xffff, tablebase.probe(b));
+        }
+        setPosition(b, 0, 1, 0);
+        assertEquals(entry(LOSS, 0), tablebase.probe(b));
+    }
+
+    @Test
+    public void testBitbase() throws IOException, InterruptedException {
+        TablebaseGenerator generator = new TablebaseGenerator(2, 1);
+        generator.generate(false);
+        File file = File.createTempFile("qirkat", ".bb");
+        file.deleteOnExit();
+        generator.writeBitbase(file.getPath());
+        Bitbase bitbase = new Bitbase(file.getPath());
+        assertEquals(2, bitbase.maxPieces());
+        Board b = new Board();
+        assertEquals(MISSING, bitbase.probe(b));
+        short[] table = generator.table(1, 1);
+        int found = 0;
+        for (int k = 0; k < table.length; k += 1) {
+            setPosition(b, 1, 1, k);
+            int outcome = bitbase.probe(b);
+            if (outcome != MISSING) {
+                assertEquals(b.toString(), outcome(table[k] & 0xffff),
+                             outcome);
+                found += 1;
+            }
+        }
+        assertTrue("most outcomes known", found > table.length / 2);
+    }
+
+    /** Return 1 if the side to move in B can force a win within DEPTH
+     *  moves, -1 if its opponent can, and otherwise 0. */
+    private static int forced(Board b, int depth) {
+        MoveBuffer moves = new MoveBuffer();
+        b.getMoves(moves);
+        if (moves.isEmpty()) {
+            return -1;
+        } else if (depth == 0) {
+            return 0;
+        }
+        int best = -1;
+        for (int i = 0; i < moves.size() && best < 1; i += 1) {
+            Move mov = moves.move(i);
+            b.makeMoveUnchecked(mov);
+            best = Math.max(best, -forced(b, depth - 1));
+            b.unmakeMove(mov);
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,220 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size table of search results keyed by Board.key(), shared by
+ * all searching threads.  Each entry records the position's key, the
+ * depth searched, whether the score is exact or a bound, the score, and
+ * the id of the best move found.
+ * <p>
+ * Entries occupy two parallel long arrays: one holds a packed data word
+ * and the other the position key XORed with that data word.  A reader
+ * accepts an entry only if the two words XOR back to the key it is
+ * looking for, so an entry torn by a concurrent write simply looks
+ * like a miss, and no locking is needed.
+ * <p>
+ * Entries are grouped into buckets of BUCKET_SIZE.  A new result
+ * replaces the entry for the same position, if any; otherwise it
+ * replaces the entry in its bucket that is shallowest after penalizing
+ * entries left over from earlier searches.
+ *
+ * @author Townsend Saunders
+ */
+class TranspositionTable {
+
+    /**
+     * Bound types: the score is exact, a lower bound (the search failed
+     * high), or an upper bound (the search failed low).  None is 0, so
+     * that a valid data word is never 0.
+     */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /**
+     * Returned by probe when there is no entry.
+     */
+    static final long MISSING = 0;
+
+    /**
+     * Move field value denoting no move.  Every move id is less than
+     * this (see Move.MAX_MOVES).
+     */
+    static final int NO_MOVE = (1 << 22) - 1;
+
+    /**
+     * Default size in megabytes.
+     */
+    static final int DEFAULT_MEGABYTES = 16;
+
+    /**
+     * A table occupying about MEGABYTES megabytes.
+     */
+    TranspositionTable(int megabytes) {
+        long entries = ((long) megabytes << 20) / BYTES_PER_ENTRY;
+        int size = BUCKET_SIZE;
+        while (size * 2L <= entries && size < (1 << 30)) {
+            size *= 2;
+        }
+        _keys = new long[size];
+        _data = new long[size];
+        _bucketMask = (size - 1) & ~(BUCKET_SIZE - 1);
+    }
+
+    /**
+     * Return the number of entries.
+     */
+    int capacity() {
+        return _data.length;
+    }
+
+    /**
+     * Remove all entries.
+     */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_data, 0);
+    }
+
+    /**
+     * Note the start of a new search, so that entries from earlier
+     * searches become preferred for replacement.
+     */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /**
+     * Return the data word stored for the position with key KEY, or
+     * MISSING if there is none.  Use the depth, bound, score, and move
+     * methods to decode it.
+     */
+    long probe(long key) {
+        int bucket = (int) key & _bucketMask;
+        for (int i = bucket; i < bucket + BUCKET_SIZE; i += 1) {
+            long data = _data[i];
+            if ((_keys[i] ^ data) == key && data != MISSING) {
+                return data;
+            }
+        }
+        return MISSING;
+    }
+
+    /**
+     * Record that searching the position with key KEY to DEPTH produced
+     * SCORE, whose bound type is BOUND, and best move MOVE (a move id,
+     * or NO_MOVE).
+     */
+    void store(long key, int depth, int bound, int score, int move) {
+        int bucket = (int) key & _bucketMask;
+        int victim = bucket;
+        int victimWorth = Integer.MAX_VALUE;
+        for (int i = bucket; i < bucket + BUCKET_SIZE; i += 1) {
+            long old = _data[i];
+            if ((_keys[i] ^ old) == key) {
+                if (depth < depth(old) && bound != EXACT
+                    && age(old) == _age) {
+                    return;
+                }
+                if (move == NO_MOVE) {
+                    move = move(old);
+                }
+                victim = i;
+                break;
+            }
+            int worth = old == MISSING ? Integer.MIN_VALUE
+                : depth(old) - AGE_PENALTY * ((_age - age(old)) & AGE_MASK);
+            if (worth < victimWorth) {
+                victim = i;
+                victimWorth = worth;
+            }
+        }
+        long data = (score & 0xffffffffL)
+            | ((long) move << MOVE_SHIFT)
+            | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) _age << AGE_SHIFT);
+        _data[victim] = data;
+        _keys[victim] = key ^ data;
+    }
+
+    /**
+     * Return the depth recorded in DATA.
+     */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /**
+     * Return the bound type recorded in DATA.
+     */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /**
+     * Return the score recorded in DATA.
+     */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /**
+     * Return the move id recorded in DATA, or NO_MOVE.
+     */
+    static int move(long data) {
+        return (int) (data >>> MOVE_SHIFT) & NO_MOVE;
+    }
+
+    /**
+     * Return the search age recorded in DATA.
+     */
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /**
+     * Layout of a data word: score in bits 0-31, move in bits 32-53,
+     * depth in bits 54-59, bound in bits 60-61, and age in bits 62-63.
+     */
+    private static final int
+        MOVE_SHIFT = 32,
+        DEPTH_SHIFT = 54, DEPTH_MASK = 0x3f,
+        BOUND_SHIFT = 60, BOUND_MASK = 0x3,
+        AGE_SHIFT = 62, AGE_MASK = 0x3;
+
+    /**
+     * Number of entries examined for each key.
+     */
+    private static final int BUCKET_SIZE = 4;
+
+    /**
+     * Memory used by one entry.
+     */
+    private static final int BYTES_PER_ENTRY = 16;
+
+    /**
+     * Depth by which each search of age reduces the worth of an entry
+     * when choosing one to replace.
+     */
+    private static final int AGE_PENALTY = 8;
+
+    /**
+     * Key XOR data for each entry.
+     */
+    private final long[] _keys;
+
+    /**
+     * Packed data for each entry.
+     */
+    private final long[] _data;
+
+    /**
+     * Mask that reduces a key to the index of the start of its bucket.
+     */
+    private final int _bucketMask;
+
+    /**
+     * Age of the current search.
+     */
+    private volatile int _age;
+}
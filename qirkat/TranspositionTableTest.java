@@ -0,0 +1,69 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.TranspositionTable.*;
+
+/** Tests of the TranspositionTable class.
+ *  @author
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 0x123456789abcdefL;
+        assertEquals(MISSING, table.probe(key));
+        table.store(key, 5, LOWER, -42, 1234);
+        long data = table.probe(key);
+        assertNotEquals(MISSING, data);
+        assertEquals(5, depth(data));
+        assertEquals(LOWER, bound(data));
+        assertEquals(-42, score(data));
+        assertEquals(1234, TranspositionTable.move(data));
+        assertEquals(MISSING, table.probe(key ^ 1L << 40));
+    }
+
+    @Test
+    public void testNoMoveReserved() {
+        assertTrue(Move.MAX_MOVES <= NO_MOVE);
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(5, 3, EXACT, 0, Move.MAX_MOVES - 1);
+        assertEquals(Move.MAX_MOVES - 1,
+                     TranspositionTable.move(table.probe(5)));
+    }
+
+    @Test
+    public void testDepthPreferred() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = 77;
+        table.store(key, 6, EXACT, 10, 3);
+        table.store(key, 2, UPPER, 20, NO_MOVE);
+        assertEquals(6, depth(table.probe(key)));
+        table.newSearch();
+        table.store(key, 2, UPPER, 20, NO_MOVE);
+        long data = table.probe(key);
+        assertEquals(2, depth(data));
+        assertEquals("keeps old best move", 3,
+                     TranspositionTable.move(data));
+    }
+
+    @Test
+    public void testBucketReplacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        long stride = table.capacity();
+        for (int i = 0; i < 5; i += 1) {
+            table.store(1 + i * stride, 10 - i, EXACT, i, NO_MOVE);
+        }
+        assertEquals("shallowest evicted", MISSING,
+                     table.probe(1 + 3 * stride));
+        assertNotEquals(MISSING, table.probe(1 + 4 * stride));
+        table.newSearch();
+        table.newSearch();
+        table.store(1 + 5 * stride, 1, EXACT, 0, NO_MOVE);
+        assertNotEquals(MISSING, table.probe(1 + 5 * stride));
+        assertNotEquals(MISSING, table.probe(1));
+    }
+
+}
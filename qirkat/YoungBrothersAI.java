@@ -0,0 +1,419 @@
+package qirkat;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import static qirkat.AI.*;
+import static qirkat.PieceColor.*;
+import static qirkat.TranspositionTable.*;
+
+/**
+ * A Player that computes its own moves with a parallel alpha-beta search
+ * using the Young Brothers Wait rule: at each node at least SPLIT_DEPTH
+ * above the horizon, it searches the first (eldest) move serially, and
+ * only then searches the remaining (younger) moves in parallel as
+ * separate ForkJoinPool tasks.  When one of those tasks fails high, its
+ * outstanding siblings and all their descendants stop.  Shares the
+ * transposition table, time limit, and thread count of AI.
+ *
+ * @author Townsend Saunders
+ */
+class YoungBrothersAI extends Player {
+
+    /**
+     * Nodes with less remaining depth than this are searched serially.
+     */
+    private static final int SPLIT_DEPTH = 3;
+
+    /**
+     * Ordering scores of the hash move and captures.
+     */
+    private static final int
+        HASH_MOVE_SCORE = 1 << 30,
+        CAPTURE_SCORE = 1 << 29;
+
+    /**
+     * A new YoungBrothersAI for GAME that will play MYCOLOR.
+     */
+    YoungBrothersAI(Game game, PieceColor myColor) {
+        super(game, myColor);
+    }
+
+    @Override
+    Move myMove() {
+        Main.startTiming();
+        Move move = findMove(board().snapshot(), MAX_DEPTH, timeLimit());
+        Main.endTiming();
+
+        if (move != null) {
+            game().reportMove("%s moves %s.", myColor(), move);
+        }
+        return move;
+    }
+
+    /**
+     * Return the best move found in position B by an iterative
+     * deepening search to at most MAXDEPTH plies, taking about TIMELIMIT
+     * milliseconds at most, or null if there is no move.
+     */
+    Move findMove(Board b, int maxDepth, long timeLimit) {
+        int sense = b.whoseMove() == WHITE ? 1 : -1;
+        _table = table();
+        _table.newSearch();
+        _deadline = timeLimit == Long.MAX_VALUE ? Long.MAX_VALUE
+            : System.currentTimeMillis() + timeLimit;
+        _timeUp = _canStop = false;
+        _nodes.reset();
+        ForkJoinPool pool = pool();
+        Move best = null;
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            _lastFoundMove = null;
+            int value =
+                pool.invoke(new Search(null, b, depth, 0, sense,
+                                       -INFTY, INFTY));
+            if (_timeUp) {
+                break;
+            }
+            best = _lastFoundMove;
+            _canStop = true;
+            if (best == null || Math.abs(value) >= WIN_THRESHOLD) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the number of positions visited by the last search.
+     */
+    long nodes() {
+        return _nodes.sum();
+    }
+
+    /**
+     * Return the pool that runs all YoungBrothersAI searches, with one
+     * worker for each of AI's threads, creating it if needed.
+     */
+    private static synchronized ForkJoinPool pool() {
+        if (_pool == null || _pool.getParallelism() != threads()) {
+            if (_pool != null) {
+                _pool.shutdown();
+            }
+            _pool = new ForkJoinPool(threads());
+        }
+        return _pool;
+    }
+
+    /**
+     * Search a snapshot of GAME's board to each depth from 1 to DEPTH,
+     * starting with an empty transposition table, and print the number
+     * of positions visited and time taken.
+     */
+    static void benchmark(Game game, int depth) {
+        Board board = game.board();
+        YoungBrothersAI ai = new YoungBrothersAI(game, board.whoseMove());
+        table().clear();
+        long start = System.currentTimeMillis();
+        Move best = ai.findMove(board.snapshot(), Math.min(depth, MAX_PLY),
+                                Long.MAX_VALUE);
+        System.out.printf("ybw, threads %d: depth %d, %d nodes, %d msec,"
+                          + " best %s%n", threads(), depth, ai.nodes(),
+                          System.currentTimeMillis() - start, best);
+    }
+
+    /**
+     * A set of younger brothers searched in parallel, all children of
+     * the same node.
+     */
+    private static final class Split {
+
+        /**
+         * A split made by the task OWNER at a node whose beta bound
+         * is BETA.
+         */
+        Split(Search owner, int beta) {
+            _owner = owner;
+            _beta = beta;
+        }
+
+        /**
+         * The task that searches the parent node.
+         */
+        private final Search _owner;
+
+        /**
+         * The beta bound of the parent node.
+         */
+        private final int _beta;
+
+        /**
+         * Set when one of the children fails high, so that the rest may
+         * stop.
+         */
+        private volatile boolean _cutoff;
+    }
+
+    /**
+     * A task that searches one position, and returns its negamax value.
+     */
+    private final class Search extends RecursiveTask<Integer> {
+
+        /**
+         * A task that searches BOARD, one of the younger brothers in
+         * SPLIT (null at the root), to DEPTH, PLY moves below the
+         * root, for the side whose sense is SENSE, with bounds ALPHA and
+         * BETA.  The task owns BOARD from now on.
+         */
+        Search(Split split, Board board, int depth, int ply, int sense,
+               int alpha, int beta) {
+            _split = split;
+            _board = board;
+            _depth = depth;
+            _ply = ply;
+            _sense = sense;
+            _alpha = alpha;
+            _beta = beta;
+            _buffers = new MoveBuffer[depth + 1];
+        }
+
+        @Override
+        protected Integer compute() {
+            checkClock();
+            int value = search(_board, _depth, _ply, _sense, _alpha, _beta);
+            _nodes.add(_localNodes);
+            _valid = !aborted();
+            if (_valid && _split != null && -value >= _split._beta) {
+                _split._cutoff = true;
+            }
+            return value;
+        }
+
+        /**
+         * Note whether time has run out.  Called when each task starts,
+         * as well as every CLOCK_INTERVAL positions it visits, since
+         * many tasks visit fewer.
+         */
+        private void checkClock() {
+            if (_canStop && System.currentTimeMillis() > _deadline) {
+                _timeUp = true;
+            }
+        }
+
+        /**
+         * Return true iff this search should stop: time has run out, or
+         * a brother of mine or of one of my ancestors has failed high.
+         */
+        private boolean aborted() {
+            if (_timeUp) {
+                return true;
+            }
+            for (Split s = _split; s != null; s = s._owner._split) {
+                if (s._cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Return the negamax value of BOARD, searched to DEPTH, PLY moves
+         * below the root, for the side whose sense is SENSE, as for
+         * AI.findMove with bounds ALPHA and BETA.  Records the best move
+         * in _lastFoundMove iff PLY is 0.  Returns 0 if aborted.
+         */
+        private int search(Board board, int depth, int ply, int sense,
+                           int alpha, int beta) {
+            _localNodes += 1;
+            if (_localNodes % CLOCK_INTERVAL == 0) {
+                checkClock();
+            }
+            if (aborted()) {
+                return 0;
+            }
+
+            long key = board.key();
+            long entry = depth > 0 ? _table.probe(key) : MISSING;
+            if (ply > 0 && entry != MISSING && depth(entry) >= depth) {
+                int value = fromTable(score(entry), ply);
+                int bound = bound(entry);
+                if (bound == EXACT
+                    || bound == LOWER && value >= beta
+                    || bound == UPPER && value <= alpha) {
+                    return value;
+                }
+            }
+
+            MoveBuffer moves = buffer(ply);
+            board.getMoves(moves);
+            if (moves.isEmpty()) {
+                return -(WINNING_VALUE - ply);
+            }
+            if (depth == 0) {
+                return sense * staticScore(board);
+            }
+
+            scoreMoves(moves,
+                       entry == MISSING ? NO_MOVE : move(entry));
+            boolean split = depth >= SPLIT_DEPTH && moves.size() > 1;
+            int bestValue = -INFTY;
+            int bestMove = NO_MOVE;
+            int a = alpha;
+            int i;
+            for (i = 0; i < moves.size() && (i == 0 || !split); i += 1) {
+                moves.selectBest(i);
+                Move mov = moves.move(i);
+                board.makeMoveUnchecked(mov);
+                int value = -search(board, depth - 1, ply + 1, -sense,
+                                    -beta, -a);
+                board.unmakeMove(mov);
+                if (aborted()) {
+                    return 0;
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    bestMove = mov.id();
+                    a = Math.max(a, value);
+                    if (ply == 0) {
+                        _lastFoundMove = mov;
+                    }
+                    if (value >= beta) {
+                        break;
+                    }
+                }
+            }
+
+            if (split && bestValue < beta) {
+                Split brothers = new Split(this, beta);
+                Search[] tasks = new Search[moves.size() - 1];
+                for (int k = 0; k < tasks.length; k += 1) {
+                    moves.selectBest(k + 1);
+                    Board child = board.snapshot();
+                    child.makeMoveUnchecked(moves.move(k + 1));
+                    tasks[k] = new Search(brothers, child, depth - 1,
+                                          ply + 1, -sense, -beta, -a);
+                    tasks[k].fork();
+                }
+                for (int k = 0; k < tasks.length; k += 1) {
+                    tasks[k].join();
+                }
+                if (aborted()) {
+                    return 0;
+                }
+                for (int k = 0; k < tasks.length; k += 1) {
+                    int value = -tasks[k].getRawResult();
+                    if (tasks[k]._valid && value > bestValue) {
+                        bestValue = value;
+                        bestMove = moves.get(k + 1);
+                        if (ply == 0) {
+                            _lastFoundMove = moves.move(k + 1);
+                        }
+                    }
+                }
+            }
+
+            int bound = bestValue <= alpha ? UPPER
+                : bestValue >= beta ? LOWER : EXACT;
+            _table.store(key, depth, bound, toTable(bestValue, ply),
+                         bestMove);
+            return bestValue;
+        }
+
+        /**
+         * Assign ordering scores to MOVES so that the move whose id is
+         * HASHMOVE comes first, then captures by the number of pieces
+         * they take.
+         */
+        private void scoreMoves(MoveBuffer moves, int hashMove) {
+            for (int i = 0; i < moves.size(); i += 1) {
+                int id = moves.get(i);
+                Move mov = Move.get(id);
+                if (id == hashMove) {
+                    moves.setScore(i, HASH_MOVE_SCORE);
+                } else if (mov.isJump()) {
+                    moves.setScore(i, CAPTURE_SCORE + mov.captures());
+                } else {
+                    moves.setScore(i, 0);
+                }
+            }
+        }
+
+        /**
+         * Return my move list for PLY, creating it if needed.
+         */
+        private MoveBuffer buffer(int ply) {
+            int k = ply - _ply;
+            if (_buffers[k] == null) {
+                _buffers[k] = new MoveBuffer();
+            }
+            return _buffers[k];
+        }
+
+        /**
+         * The brothers I belong to, or null at the root.
+         */
+        private final Split _split;
+
+        /**
+         * The position I search, which I own.
+         */
+        private final Board _board;
+
+        /**
+         * Parameters of my search.
+         */
+        private final int _depth, _ply, _sense, _alpha, _beta;
+
+        /**
+         * Move lists for each ply of my search below _ply.
+         */
+        private final MoveBuffer[] _buffers;
+
+        /**
+         * Number of positions I have visited.
+         */
+        private long _localNodes;
+
+        /**
+         * True iff my search completed without being aborted.
+         */
+        private boolean _valid;
+    }
+
+    /**
+     * The pool that runs all YoungBrothersAI searches.
+     */
+    private static ForkJoinPool _pool;
+
+    /**
+     * The transposition table used by the current search.
+     */
+    private TranspositionTable _table;
+
+    /**
+     * The best move found at the root by the current iteration.
+     */
+    private volatile Move _lastFoundMove;
+
+    /**
+     * Time (as from System.currentTimeMillis) at which the current
+     * search must stop.
+     */
+    private volatile long _deadline;
+
+    /**
+     * True iff the current search has run out of time.
+     */
+    private volatile boolean _timeUp;
+
+    /**
+     * True iff the current search has completed an iteration, and so may
+     * stop when time runs out.
+     */
+    private volatile boolean _canStop;
+
+    /**
+     * Number of positions visited by the current search.
+     */
+    private final LongAdder _nodes = new LongAdder();
+}